@@ -0,0 +1,98 @@
+package com.taskqueue.benchmark;
+
+import com.taskqueue.config.TaskQueueProperties;
+import com.taskqueue.executor.AsyncTaskExecutor;
+import com.taskqueue.executor.TaskContext;
+import com.taskqueue.executor.TaskExecutor;
+import com.taskqueue.executor.TaskResult;
+import com.taskqueue.service.TaskExecutorService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead TaskExecutorService adds around an executor that does nothing:
+ * the registry lookup on the synchronous path, and the hand-off to a
+ * virtual thread when a blocking executor is run asynchronously.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class ExecutorDispatchBenchmark {
+    
+    private static final String ASYNC_TYPE = "NOOP_ASYNC";
+    
+    private TaskExecutor noop;
+    private TaskExecutorService service;
+    private Map<String, Object> payload;
+    private TaskContext blockingContext;
+    private TaskContext asyncContext;
+    
+    @Setup
+    public void setup() {
+        noop = new NoopTaskExecutor();
+        AsyncTaskExecutor asyncNoop = new AsyncTaskExecutor() {
+            @Override
+            public String getTaskType() {
+                return ASYNC_TYPE;
+            }
+            
+            @Override
+            public CompletionStage<TaskResult> executeAsync(TaskContext context) {
+                return CompletableFuture.completedFuture(TaskResult.empty());
+            }
+        };
+        StaticListableBeanFactory beans = new StaticListableBeanFactory(Map.of("asyncNoop", asyncNoop));
+        service = new TaskExecutorService(List.of(noop), beans.getBeanProvider(AsyncTaskExecutor.class),
+                                          new TaskQueueProperties());
+        
+        payload = TaskFixtures.emailPayload();
+        blockingContext = TaskContext.builder().taskType(NoopTaskExecutor.TASK_TYPE).payload(payload).build();
+        asyncContext = TaskContext.builder().taskType(ASYNC_TYPE).payload(payload).build();
+    }
+    
+    @TearDown
+    public void tearDown() {
+        service.shutdown();
+    }
+    
+    // Baseline: calling the executor directly
+    @Benchmark
+    public void direct() throws Exception {
+        noop.execute(payload);
+    }
+    
+    @Benchmark
+    public void execute() throws Exception {
+        service.execute(NoopTaskExecutor.TASK_TYPE, payload);
+    }
+    
+    @Benchmark
+    public TaskResult executeAsyncNative() {
+        return service.executeAsync(asyncContext).toCompletableFuture().join();
+    }
+    
+    // Blocking executor adapted onto a virtual thread
+    @Benchmark
+    public TaskResult executeAsyncAdapted() {
+        return service.executeAsync(blockingContext).toCompletableFuture().join();
+    }
+}
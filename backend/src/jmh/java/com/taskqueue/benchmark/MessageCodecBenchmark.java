@@ -0,0 +1,76 @@
+package com.taskqueue.benchmark;
+
+import com.taskqueue.config.TaskQueueProperties;
+import com.taskqueue.model.Task;
+import com.taskqueue.queue.TaskMessageConverter;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode/decode cost of a queued task through the JSON converter versus the
+ * binary envelope, with and without LZ4. The encode benchmark also reports
+ * the encoded size as the "bytes" secondary result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageCodecBenchmark {
+    
+    @Param({"json", "binary", "binary-lz4"})
+    public String codec;
+    
+    @Param({"small", "large"})
+    public String payload;
+    
+    private TaskMessageConverter converter;
+    private Task task;
+    private Message encoded;
+    
+    @Setup
+    public void setup() {
+        TaskQueueProperties.Messaging messaging = new TaskQueueProperties.Messaging();
+        messaging.setCodec(codec.startsWith("binary") ? "binary" : "json");
+        messaging.setCompression(codec.endsWith("lz4") ? "lz4" : "none");
+        converter = new TaskMessageConverter(new Jackson2JsonMessageConverter(), messaging);
+        
+        task = TaskFixtures.queuedTask(payload);
+        encoded = converter.toMessage(task, new MessageProperties());
+    }
+    
+    @Benchmark
+    public Message encode(EncodedSize size) {
+        Message message = converter.toMessage(task, new MessageProperties());
+        size.bytes = message.getBody().length;
+        return message;
+    }
+    
+    @Benchmark
+    public Object decode() {
+        return converter.fromMessage(encoded);
+    }
+    
+    // Reported as is, not per operation: the value is the size of one encoded message
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class EncodedSize {
+        public long bytes;
+    }
+}
@@ -0,0 +1,158 @@
+package com.taskqueue.benchmark;
+
+import com.taskqueue.DistributedTaskQueueApplication;
+import com.taskqueue.dto.BatchTaskResponse;
+import com.taskqueue.dto.TaskRequest;
+import com.taskqueue.executor.TaskExecutor;
+import com.taskqueue.model.Priority;
+import com.taskqueue.service.TaskSubmissionService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.RabbitMQContainer;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Submit-to-complete time of no-op tasks through the whole application,
+ * against throwaway Postgres, RabbitMQ and Redis containers (needs Docker).
+ * Each invocation submits one batch and waits until every task in it has
+ * completed; the score is per task.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class SubmitToCompleteBenchmark {
+    
+    private static final int BATCH_SIZE = 100;
+    private static final long COMPLETION_TIMEOUT_MS = 30000;
+    
+    private static final String COMPLETED_SQL =
+        "SELECT COUNT(*) FROM tasks WHERE task_id = ANY(?) AND status = 'COMPLETED'";
+    
+    @Param({"amqp", "postgres"})
+    public String backend;
+    
+    private PostgreSQLContainer<?> postgres;
+    private RabbitMQContainer rabbitmq;
+    private GenericContainer<?> redis;
+    private ConfigurableApplicationContext context;
+    private TaskSubmissionService submissionService;
+    private JdbcTemplate jdbcTemplate;
+    private List<TaskRequest> batch;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        // Same images as docker-compose.yml
+        postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+        rabbitmq = new RabbitMQContainer("rabbitmq:3-management-alpine");
+        redis = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+        postgres.start();
+        rabbitmq.start();
+        redis.start();
+        
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.datasource.url", postgres.getJdbcUrl() + "&reWriteBatchedInserts=true");
+        properties.put("spring.datasource.username", postgres.getUsername());
+        properties.put("spring.datasource.password", postgres.getPassword());
+        properties.put("spring.rabbitmq.host", rabbitmq.getHost());
+        properties.put("spring.rabbitmq.port", rabbitmq.getAmqpPort());
+        properties.put("spring.rabbitmq.username", rabbitmq.getAdminUsername());
+        properties.put("spring.rabbitmq.password", rabbitmq.getAdminPassword());
+        properties.put("spring.data.redis.host", redis.getHost());
+        properties.put("spring.data.redis.port", redis.getMappedPort(6379));
+        properties.put("spring.jpa.show-sql", false);
+        properties.put("server.port", 0);
+        properties.put("task-queue.queue.backend", backend);
+        
+        context = new SpringApplicationBuilder(DistributedTaskQueueApplication.class, NoopExecutorConfig.class)
+            .properties(properties)
+            .run();
+        submissionService = context.getBean(TaskSubmissionService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(TaskRequest.builder()
+                .taskType(NoopTaskExecutor.TASK_TYPE)
+                .priority(Priority.values()[i % Priority.values().length])
+                .payload(Map.of("sequence", i))
+                .maxRetries(0)
+                .build());
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+        redis.stop();
+        rabbitmq.stop();
+        postgres.stop();
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void submitAndAwaitCompletion() throws Exception {
+        BatchTaskResponse response = submissionService.submitBatch(batch);
+        String[] taskIds = response.getResults().stream()
+            .map(result -> result.getTask().getTaskId())
+            .toArray(String[]::new);
+        
+        long deadline = System.currentTimeMillis() + COMPLETION_TIMEOUT_MS;
+        while (completed(taskIds) < taskIds.length) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new TimeoutException("Batch did not complete within " + COMPLETION_TIMEOUT_MS + "ms");
+            }
+            Thread.sleep(1);
+        }
+    }
+    
+    private int completed(String[] taskIds) {
+        Integer count = jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(COMPLETED_SQL);
+            ps.setArray(1, connection.createArrayOf("varchar", taskIds));
+            return ps;
+        }, rs -> rs.next() ? rs.getInt(1) : 0);
+        return count != null ? count : 0;
+    }
+    
+    // The NOOP executor is normally only registered with the "benchmark" profile,
+    // which would also start QueueBackendBenchmark
+    @Configuration
+    static class NoopExecutorConfig {
+        
+        @Bean
+        TaskExecutor noopTaskExecutor() {
+            return new NoopTaskExecutor();
+        }
+    }
+}
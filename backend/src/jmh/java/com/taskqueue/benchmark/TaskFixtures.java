@@ -0,0 +1,61 @@
+package com.taskqueue.benchmark;
+
+import com.taskqueue.model.Priority;
+import com.taskqueue.model.Task;
+import com.taskqueue.model.TaskStatus;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Representative tasks for the benchmarks, shaped like what the queues
+ * carry in production.
+ */
+final class TaskFixtures {
+    
+    private TaskFixtures() {
+    }
+    
+    /**
+     * @param size "small" for an EMAIL_SEND-sized payload, "large" for a
+     *             REPORT_GENERATE payload of a few KB
+     */
+    static Task queuedTask(String size) {
+        return Task.builder()
+            .id(1_234_567L)
+            .taskId("task_3f1c8e2a9b7d4c6e8f0a1b2c3d4e5f60")
+            .taskType("large".equals(size) ? "REPORT_GENERATE" : "EMAIL_SEND")
+            .priority(Priority.HIGH)
+            .status(TaskStatus.PENDING)
+            .payload("large".equals(size) ? reportPayload() : emailPayload())
+            .retryCount(0)
+            .maxRetries(3)
+            .createdAt(LocalDateTime.of(2024, 3, 1, 12, 30, 15, 123_456_000))
+            .build();
+    }
+    
+    static Map<String, Object> emailPayload() {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("to", "customer@example.com");
+        payload.put("subject", "Your order has shipped");
+        payload.put("body", "Hi, your order #100234 is on its way and should arrive within three business days.");
+        payload.put("template", "order-shipped");
+        return payload;
+    }
+    
+    static Map<String, Object> reportPayload() {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("reportType", "monthly-sales");
+        payload.put("format", "pdf");
+        payload.put("recipients", List.of("finance@example.com", "ops@example.com"));
+        List<Map<String, Object>> rows = new java.util.ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            rows.add(Map.of("region", "region-" + (i % 8), "sku", "SKU-" + (10_000 + i),
+                "units", i * 7, "revenue", i * 123.45));
+        }
+        payload.put("rows", rows);
+        return payload;
+    }
+}
@@ -0,0 +1,74 @@
+package com.taskqueue.benchmark;
+
+import com.taskqueue.config.RedisConfig;
+import com.taskqueue.model.Task;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Task JSON through the two serializers configured in the application: the
+ * AMQP Jackson converter (without the binary codec in front of it, see
+ * {@link MessageCodecBenchmark}) and the Redis template's value serializer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class TaskSerializationBenchmark {
+    
+    @Param({"small", "large"})
+    public String payload;
+    
+    private Jackson2JsonMessageConverter amqpConverter;
+    private GenericJackson2JsonRedisSerializer redisSerializer;
+    private Task task;
+    private Message amqpMessage;
+    private byte[] redisBytes;
+    
+    @Setup
+    public void setup() {
+        // Same constructors as RabbitMQConfig and RedisConfig
+        amqpConverter = new Jackson2JsonMessageConverter();
+        redisSerializer = RedisConfig.jsonSerializer();
+        task = TaskFixtures.queuedTask(payload);
+        amqpMessage = amqpConverter.toMessage(task, new MessageProperties());
+        redisBytes = redisSerializer.serialize(task);
+    }
+    
+    @Benchmark
+    public Message amqpEncode() {
+        return amqpConverter.toMessage(task, new MessageProperties());
+    }
+    
+    @Benchmark
+    public Object amqpDecode() {
+        return amqpConverter.fromMessage(amqpMessage);
+    }
+    
+    @Benchmark
+    public byte[] redisSerialize() {
+        return redisSerializer.serialize(task);
+    }
+    
+    @Benchmark
+    public Object redisDeserialize() {
+        return redisSerializer.deserialize(redisBytes);
+    }
+}
@@ -0,0 +1,55 @@
+package com.taskqueue.service;
+
+import com.taskqueue.dto.TaskResponse;
+import com.taskqueue.model.Priority;
+import com.taskqueue.model.Task;
+import com.taskqueue.model.TaskStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response mapping on the submission path. Lives in the service package to
+ * reach the package-private {@link TaskSubmissionService#buildTaskResponse}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class TaskResponseBenchmark {
+    
+    private Task task;
+    
+    @Setup
+    public void setup() {
+        task = Task.builder()
+            .id(1L)
+            .taskId("task_3f1c8e2a9b7d4c6e8f0a1b2c3d4e5f60")
+            .taskType("EMAIL_SEND")
+            .priority(Priority.HIGH)
+            .status(TaskStatus.PENDING)
+            .payload(Map.of("to", "customer@example.com"))
+            .retryCount(0)
+            .maxRetries(3)
+            .createdAt(LocalDateTime.now())
+            .build();
+    }
+    
+    @Benchmark
+    public TaskResponse buildTaskResponse() {
+        return TaskSubmissionService.buildTaskResponse(task, "5s");
+    }
+}
@@ -0,0 +1,448 @@
+package com.taskqueue.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.taskqueue.config.TaskQueueProperties;
+import com.taskqueue.dto.TaskRequest;
+import com.taskqueue.dto.TaskResponse;
+import com.taskqueue.model.Priority;
+import com.taskqueue.model.TaskStatus;
+import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.WebSocketContainer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load test. Submits tasks through {@code POST /tasks/submit} at
+ * each configured arrival rate in turn, follows them to a terminal status on
+ * the {@code /topic/tasks} feed (falling back to the status API for
+ * stragglers) and reports submit-to-complete latency per priority and the
+ * highest rate the system sustained, then exits.
+ *
+ * <p>Requests go out asynchronously on a fixed schedule and latency is
+ * measured from when each one was due, not when it was actually sent, so a
+ * stalled server shows up in the percentiles instead of quietly lowering
+ * the arrival rate (coordinated omission). Completion times are the
+ * server's status timestamps; when targeting another host, keep the clocks
+ * in sync.
+ *
+ * <pre>
+ * mvn spring-boot:run -Dspring-boot.run.profiles=loadtest
+ * </pre>
+ * By default the instance drives itself. To load another deployment, run it
+ * with the loadtest profile and {@code --task-queue.loadtest.drive=false} so
+ * it uses the synthetic executors, and point {@code target-url} at it.
+ */
+@Slf4j
+@Component
+@Profile("loadtest")
+@ConditionalOnProperty(prefix = "task-queue.loadtest", name = "drive", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+public class LoadGenerator implements ApplicationRunner {
+    
+    private static final Set<TaskStatus> TERMINAL = EnumSet.of(TaskStatus.COMPLETED, TaskStatus.FAILED, TaskStatus.CANCELLED);
+    // Latencies are recorded in microseconds
+    private static final long MAX_LATENCY_MICROS = TimeUnit.HOURS.toMicros(1);
+    private static final int MAX_FRAME_SIZE = 1024 * 1024;
+    
+    private final TaskQueueProperties properties;
+    private final ObjectMapper objectMapper;
+    private final ApplicationContext applicationContext;
+    
+    private final HttpClient httpClient = HttpClient.newBuilder()
+        .executor(Executors.newVirtualThreadPerTaskExecutor())
+        .connectTimeout(Duration.ofSeconds(5))
+        .build();
+    // Tasks of the current step by id. An entry holds the submission or, if
+    // the status update arrived before the submit response, the completion
+    private final Map<String, Tracked> tracked = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    // Converts System.nanoTime() readings to epoch microseconds
+    private final long clockOffsetMicros = ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now())
+        - TimeUnit.NANOSECONDS.toMicros(System.nanoTime());
+    
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        TaskQueueProperties.LoadTest loadtest = properties.getLoadtest();
+        log.info("Load testing {} at {} tasks/s", loadtest.getTargetUrl(), loadtest.getRates());
+        
+        StompSession session = connect(loadtest.getTargetUrl());
+        List<StepReport> steps = new ArrayList<>();
+        try {
+            for (int rate : loadtest.getRates()) {
+                StepReport step = runStep(rate, loadtest);
+                steps.add(step);
+                log(step);
+                // Past the ceiling the backlog only grows; later steps would measure the backlog
+                if (!step.sustained()) {
+                    break;
+                }
+            }
+        } finally {
+            session.disconnect();
+        }
+        
+        Report report = Report.of(loadtest.getSloP99(), steps);
+        log.info("sustained ceiling: {} tasks/s, peak throughput: {} tasks/s",
+                 report.sustainedRate() != null ? report.sustainedRate() : "none",
+                 String.format("%.1f", report.peakThroughput()));
+        write(report, loadtest.getReportFile());
+        System.exit(SpringApplication.exit(applicationContext, () -> 0));
+    }
+    
+    private StepReport runStep(int rate, TaskQueueProperties.LoadTest loadtest) throws InterruptedException {
+        log.info("Offering {} tasks/s for {} ms", rate, loadtest.getStepDuration());
+        Step step = new Step(rate);
+        WeightedChoice<String> types = new WeightedChoice<>(loadtest.getMix());
+        WeightedChoice<Priority> priorities = new WeightedChoice<>(loadtest.getPriorities());
+        
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long end = start + TimeUnit.MILLISECONDS.toNanos(loadtest.getStepDuration());
+        for (long due = start; due < end; due += interval) {
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            submit(step, due, types.next(), priorities.next(), loadtest.getTargetUrl());
+        }
+        
+        long drainDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(loadtest.getDrainTimeout());
+        while (step.outstanding() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(100);
+        }
+        resolveStragglers(loadtest.getTargetUrl());
+        tracked.clear();
+        return step.report(loadtest);
+    }
+    
+    private void submit(Step step, long due, String taskType, Priority priority, String targetUrl) {
+        TaskRequest request = TaskRequest.builder()
+            .taskType(taskType)
+            .priority(priority)
+            // Unique payloads, so coalescing cannot merge load-test tasks
+            .payload(Map.of("seq", sequence.incrementAndGet()))
+            .maxRetries(0)
+            .build();
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(request);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize task request", e);
+        }
+        
+        Submission submission = new Submission(step, priority, epochMicros(due));
+        step.submitted.increment();
+        HttpRequest httpRequest = HttpRequest.newBuilder(URI.create(targetUrl + "/tasks/submit"))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+            .build();
+        httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofByteArray())
+            .whenComplete((response, error) -> onSubmitted(submission, response, error));
+    }
+    
+    private void onSubmitted(Submission submission, HttpResponse<byte[]> response, Throwable error) {
+        String taskId = error == null && response.statusCode() == HttpStatus.CREATED.value()
+            ? taskId(response.body()) : null;
+        if (taskId == null) {
+            submission.step().rejected.increment();
+            return;
+        }
+        tracked.compute(taskId, (id, entry) -> {
+            if (entry == null) {
+                return new Tracked(submission, null, 0);
+            }
+            submission.step().finish(submission, entry.status(), entry.doneAtMicros());
+            return null;
+        });
+    }
+    
+    private void onStatusUpdate(StatusUpdate update) {
+        if (!TERMINAL.contains(update.status())) {
+            return;
+        }
+        long doneAt = update.timestamp() != null
+            ? epochMicros(update.timestamp())
+            : epochMicros(System.nanoTime());
+        tracked.compute(update.taskId(), (id, entry) -> {
+            if (entry == null) {
+                return new Tracked(null, update.status(), doneAt);
+            }
+            if (entry.submission() == null) {
+                return entry;
+            }
+            entry.submission().step().finish(entry.submission(), update.status(), doneAt);
+            return null;
+        });
+    }
+    
+    /**
+     * Looks up tasks still without a terminal update after the drain, in
+     * case their update was missed while the subscription was starting or
+     * reconnecting.
+     */
+    private void resolveStragglers(String targetUrl) {
+        tracked.forEach((taskId, entry) -> {
+            if (entry.submission() == null) {
+                return;
+            }
+            TaskResponse task = fetch(targetUrl, taskId);
+            if (task != null && TERMINAL.contains(task.getStatus()) && tracked.remove(taskId, entry)) {
+                long doneAt = task.getCompletedAt() != null
+                    ? epochMicros(task.getCompletedAt())
+                    : epochMicros(System.nanoTime());
+                entry.submission().step().finish(entry.submission(), task.getStatus(), doneAt);
+            }
+        });
+    }
+    
+    private TaskResponse fetch(String targetUrl, String taskId) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(targetUrl + "/tasks/" + taskId)).GET().build();
+        try {
+            HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            return response.statusCode() == HttpStatus.OK.value()
+                ? objectMapper.readValue(response.body(), TaskResponse.class) : null;
+        } catch (IOException e) {
+            log.warn("Could not fetch status of task {}: {}", taskId, e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+    
+    private String taskId(byte[] body) {
+        try {
+            return objectMapper.readValue(body, TaskResponse.class).getTaskId();
+        } catch (IOException e) {
+            log.warn("Unreadable submit response: {}", e.getMessage());
+            return null;
+        }
+    }
+    
+    private StompSession connect(String targetUrl) throws Exception {
+        // Coalesced status batches can exceed the container's default 8 KB text buffer
+        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        container.setDefaultMaxTextMessageBufferSize(MAX_FRAME_SIZE);
+        WebSocketStompClient client = new WebSocketStompClient(new SockJsClient(
+            List.of(new WebSocketTransport(new StandardWebSocketClient(container)))));
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(objectMapper);
+        client.setMessageConverter(converter);
+        client.setInboundMessageSizeLimit(MAX_FRAME_SIZE);
+        
+        StompSession session = client.connectAsync(targetUrl + "/ws", new StompSessionHandlerAdapter() {})
+            .get(10, TimeUnit.SECONDS);
+        session.subscribe("/topic/tasks", new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return StatusUpdate[].class;
+            }
+            
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                for (StatusUpdate update : (StatusUpdate[]) payload) {
+                    onStatusUpdate(update);
+                }
+            }
+        });
+        return session;
+    }
+    
+    private void log(StepReport step) {
+        log.info("=== {} tasks/s ===", step.rate());
+        log.info("submitted {}, rejected {}, completed {}, failed {}, unfinished {}",
+                 step.submitted(), step.rejected(), step.completed(), step.failed(), step.unfinished());
+        log.info("throughput: {} tasks/s", String.format("%.1f", step.throughput()));
+        step.latencyMs().forEach((priority, latency) ->
+            log.info("{} latency ms: p50={} p90={} p99={} p999={} max={} (n={})", priority,
+                     latency.p50(), latency.p90(), latency.p99(), latency.p999(), latency.max(), latency.count()));
+        log.info("sustained: {}", step.sustained() ? "yes" : "no");
+    }
+    
+    private void write(Report report, String reportFile) {
+        try {
+            Path path = Path.of(reportFile);
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(path.toFile(), report);
+            log.info("Report written to {}", path.toAbsolutePath());
+        } catch (IOException e) {
+            log.warn("Could not write load test report: {}", e.getMessage());
+        }
+    }
+    
+    private long epochMicros(long nanoTime) {
+        return TimeUnit.NANOSECONDS.toMicros(nanoTime) + clockOffsetMicros;
+    }
+    
+    private static long epochMicros(LocalDateTime timestamp) {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, timestamp.atZone(ZoneId.systemDefault()).toInstant());
+    }
+    
+    private record Submission(Step step, Priority priority, long dueAtMicros) {
+    }
+    
+    private record Tracked(Submission submission, TaskStatus status, long doneAtMicros) {
+    }
+    
+    private record StatusUpdate(String taskId, TaskStatus status, LocalDateTime timestamp) {
+    }
+    
+    private static class Step {
+        
+        private final int rate;
+        private final Map<Priority, Histogram> latencies = new EnumMap<>(Priority.class);
+        private final LongAdder submitted = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final AtomicLong firstDoneMicros = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong lastDoneMicros = new AtomicLong(Long.MIN_VALUE);
+        
+        Step(int rate) {
+            this.rate = rate;
+            for (Priority priority : Priority.values()) {
+                latencies.put(priority, new ConcurrentHistogram(MAX_LATENCY_MICROS, 3));
+            }
+        }
+        
+        void finish(Submission submission, TaskStatus status, long doneAtMicros) {
+            // Clamped, in case the server clock is slightly behind ours
+            long latency = Math.max(0, doneAtMicros - submission.dueAtMicros());
+            latencies.get(submission.priority()).recordValue(Math.min(latency, MAX_LATENCY_MICROS));
+            (status == TaskStatus.COMPLETED ? completed : failed).increment();
+            firstDoneMicros.accumulateAndGet(doneAtMicros, Math::min);
+            lastDoneMicros.accumulateAndGet(doneAtMicros, Math::max);
+        }
+        
+        long outstanding() {
+            return submitted.sum() - rejected.sum() - completed.sum() - failed.sum();
+        }
+        
+        StepReport report(TaskQueueProperties.LoadTest loadtest) {
+            long finished = completed.sum() + failed.sum();
+            double spanSeconds = (lastDoneMicros.get() - firstDoneMicros.get()) / 1e6;
+            double throughput = finished > 1 && spanSeconds > 0 ? finished / spanSeconds : 0;
+            
+            Map<Priority, Latency> latencyMs = new EnumMap<>(Priority.class);
+            latencies.forEach((priority, histogram) -> {
+                if (histogram.getTotalCount() > 0) {
+                    latencyMs.put(priority, Latency.of(histogram));
+                }
+            });
+            boolean withinSlo = latencyMs.values().stream().allMatch(latency -> latency.p99() <= loadtest.getSloP99());
+            long unfinished = outstanding();
+            boolean sustained = withinSlo && unfinished == 0 && throughput >= rate * loadtest.getSaturationRatio();
+            return new StepReport(rate, submitted.sum(), rejected.sum(), completed.sum(), failed.sum(),
+                                  unfinished, throughput, latencyMs, sustained);
+        }
+    }
+    
+    private static class WeightedChoice<T> {
+        
+        private final List<T> values = new ArrayList<>();
+        private final int[] cumulative;
+        
+        WeightedChoice(Map<T, Integer> weights) {
+            cumulative = new int[weights.size()];
+            int total = 0;
+            for (Map.Entry<T, Integer> entry : weights.entrySet()) {
+                total += Math.max(0, entry.getValue());
+                cumulative[values.size()] = total;
+                values.add(entry.getKey());
+            }
+            if (total == 0) {
+                throw new IllegalArgumentException("Load test weights must not all be zero: " + weights);
+            }
+        }
+        
+        T next() {
+            int pick = ThreadLocalRandom.current().nextInt(cumulative[cumulative.length - 1]);
+            for (int i = 0; i < cumulative.length; i++) {
+                if (pick < cumulative[i]) {
+                    return values.get(i);
+                }
+            }
+            return values.get(values.size() - 1);
+        }
+    }
+    
+    record Latency(long count, double p50, double p90, double p99, double p999, double max) {
+        
+        static Latency of(Histogram micros) {
+            return new Latency(micros.getTotalCount(),
+                               millis(micros.getValueAtPercentile(50)), millis(micros.getValueAtPercentile(90)),
+                               millis(micros.getValueAtPercentile(99)), millis(micros.getValueAtPercentile(99.9)),
+                               millis(micros.getMaxValue()));
+        }
+        
+        private static double millis(long micros) {
+            return Math.round(micros / 100.0) / 10.0;
+        }
+    }
+    
+    record StepReport(int rate, long submitted, long rejected, long completed, long failed, long unfinished,
+                      double throughput, Map<Priority, Latency> latencyMs, boolean sustained) {
+    }
+    
+    record Report(long sloP99Ms, Integer sustainedRate, double peakThroughput, List<StepReport> steps) {
+        
+        static Report of(long sloP99Ms, List<StepReport> steps) {
+            Integer sustainedRate = steps.stream()
+                .filter(StepReport::sustained)
+                .map(StepReport::rate)
+                .max(Integer::compare)
+                .orElse(null);
+            double peakThroughput = steps.stream().mapToDouble(StepReport::throughput).max().orElse(0);
+            return new Report(sloP99Ms, sustainedRate, peakThroughput, steps);
+        }
+    }
+}
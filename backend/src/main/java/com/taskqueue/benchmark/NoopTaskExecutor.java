@@ -0,0 +1,26 @@
+package com.taskqueue.benchmark;
+
+import com.taskqueue.executor.TaskExecutor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Does nothing, so benchmark numbers measure queue overhead only.
+ */
+@Component
+@Profile("benchmark")
+public class NoopTaskExecutor implements TaskExecutor {
+    
+    public static final String TASK_TYPE = "NOOP";
+    
+    @Override
+    public String getTaskType() {
+        return TASK_TYPE;
+    }
+    
+    @Override
+    public void execute(Map<String, Object> payload) {
+    }
+}
@@ -0,0 +1,113 @@
+package com.taskqueue.benchmark;
+
+import com.taskqueue.config.TaskQueueProperties;
+import com.taskqueue.dto.TaskRequest;
+import com.taskqueue.model.Priority;
+import com.taskqueue.service.TaskSubmissionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * End-to-end throughput and latency of the configured queue backend. Submits
+ * a fixed number of no-op tasks, waits for them to complete and reports
+ * submit-to-complete latency percentiles from the task rows, then exits.
+ *
+ * <pre>
+ * mvn spring-boot:run -Dspring-boot.run.profiles=benchmark \
+ *     -Dspring-boot.run.arguments=--task-queue.queue.backend=postgres
+ * </pre>
+ * Run once per backend against the same database to compare them.
+ */
+@Slf4j
+@Component
+@Profile("benchmark")
+@RequiredArgsConstructor
+public class QueueBackendBenchmark implements ApplicationRunner {
+    
+    private static final String COMPLETED_SQL =
+        "SELECT COUNT(*) FROM tasks WHERE task_type = ? AND created_at >= ? AND status IN ('COMPLETED', 'FAILED')";
+    
+    private static final String LATENCY_SQL =
+        "SELECT COUNT(*), MIN(created_at), MAX(completed_at), " +
+        "percentile_cont(ARRAY[0.5, 0.9, 0.99, 0.999]) WITHIN GROUP " +
+        "(ORDER BY EXTRACT(EPOCH FROM completed_at - created_at) * 1000) " +
+        "FROM tasks WHERE task_type = ? AND created_at >= ? AND status = 'COMPLETED'";
+    
+    private final TaskSubmissionService taskSubmissionService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TaskQueueProperties properties;
+    private final ApplicationContext applicationContext;
+    
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        TaskQueueProperties.Benchmark benchmark = properties.getBenchmark();
+        String backend = properties.getQueue().getBackend();
+        Timestamp since = Timestamp.valueOf(LocalDateTime.now().minusSeconds(1));
+        
+        log.info("Benchmarking {} backend with {} tasks", backend, benchmark.getTasks());
+        long submitStart = System.nanoTime();
+        submit(benchmark.getTasks(), benchmark.getBatchSize());
+        long submitMs = (System.nanoTime() - submitStart) / 1_000_000;
+        
+        long deadline = System.currentTimeMillis() + benchmark.getTimeout();
+        long done = 0;
+        while (done < benchmark.getTasks() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(200);
+            done = jdbcTemplate.queryForObject(COMPLETED_SQL, Long.class, NoopTaskExecutor.TASK_TYPE, since);
+        }
+        
+        report(backend, since, submitMs, done);
+        System.exit(SpringApplication.exit(applicationContext, () -> 0));
+    }
+    
+    private void submit(int total, int batchSize) {
+        for (int submitted = 0; submitted < total; submitted += batchSize) {
+            int size = Math.min(batchSize, total - submitted);
+            List<TaskRequest> batch = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                batch.add(TaskRequest.builder()
+                    .taskType(NoopTaskExecutor.TASK_TYPE)
+                    .priority(Priority.values()[(submitted + i) % Priority.values().length])
+                    .payload(Map.of("seq", submitted + i))
+                    .maxRetries(0)
+                    .build());
+            }
+            taskSubmissionService.submitBatch(batch);
+        }
+    }
+    
+    private void report(String backend, Timestamp since, long submitMs, long done) {
+        jdbcTemplate.query(LATENCY_SQL, rs -> {
+            long completed = rs.getLong(1);
+            Timestamp first = rs.getTimestamp(2);
+            Timestamp last = rs.getTimestamp(3);
+            
+            log.info("=== {} backend ===", backend);
+            log.info("finished {} / {} tasks, submitted in {} ms", done, properties.getBenchmark().getTasks(), submitMs);
+            // No timestamps or percentiles to report when nothing completed, e.g. after a timeout
+            if (completed == 0 || first == null || last == null) {
+                log.info("no tasks completed");
+                return;
+            }
+            Double[] percentiles = (Double[]) rs.getArray(4).getArray();
+            double elapsedSeconds = (last.getTime() - first.getTime()) / 1000.0;
+            log.info("throughput: {} tasks/s", String.format("%.1f", completed / Math.max(elapsedSeconds, 0.001)));
+            log.info("latency ms: p50={} p90={} p99={} p999={}",
+                     Math.round(percentiles[0]), Math.round(percentiles[1]),
+                     Math.round(percentiles[2]), Math.round(percentiles[3]));
+        }, NoopTaskExecutor.TASK_TYPE, since);
+    }
+}
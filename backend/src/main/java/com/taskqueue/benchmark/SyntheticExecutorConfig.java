@@ -0,0 +1,35 @@
+package com.taskqueue.benchmark;
+
+import com.taskqueue.config.TaskQueueProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Replaces the built-in executors with synthetic ones for load tests, so
+ * results reflect the queue rather than the simulated work.
+ */
+@Configuration
+@Profile("loadtest")
+public class SyntheticExecutorConfig {
+    
+    @Bean
+    public SyntheticTaskExecutor syntheticEmailExecutor(TaskQueueProperties properties) {
+        return synthetic("EMAIL_SEND", properties);
+    }
+    
+    @Bean
+    public SyntheticTaskExecutor syntheticImageExecutor(TaskQueueProperties properties) {
+        return synthetic("IMAGE_PROCESS", properties);
+    }
+    
+    @Bean
+    public SyntheticTaskExecutor syntheticReportExecutor(TaskQueueProperties properties) {
+        return synthetic("REPORT_GENERATE", properties);
+    }
+    
+    private SyntheticTaskExecutor synthetic(String taskType, TaskQueueProperties properties) {
+        TaskQueueProperties.LoadTest loadtest = properties.getLoadtest();
+        return new SyntheticTaskExecutor(taskType, loadtest.getLatency().getOrDefault(taskType, 0L), loadtest.getJitter());
+    }
+}
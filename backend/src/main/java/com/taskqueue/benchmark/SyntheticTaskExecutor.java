@@ -0,0 +1,41 @@
+package com.taskqueue.benchmark;
+
+import com.taskqueue.executor.AsyncTaskExecutor;
+import com.taskqueue.executor.TaskContext;
+import com.taskqueue.executor.TaskResult;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Completes after a fixed latency with some jitter, without holding a
+ * thread. Being async, it takes precedence over the blocking executor
+ * registered for the same task type.
+ */
+public class SyntheticTaskExecutor implements AsyncTaskExecutor {
+    
+    private final String taskType;
+    private final long latencyMs;
+    private final double jitter;
+    
+    public SyntheticTaskExecutor(String taskType, long latencyMs, double jitter) {
+        this.taskType = taskType;
+        this.latencyMs = latencyMs;
+        this.jitter = jitter;
+    }
+    
+    @Override
+    public String getTaskType() {
+        return taskType;
+    }
+    
+    @Override
+    public CompletionStage<TaskResult> executeAsync(TaskContext context) {
+        double factor = 1 + jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        long delay = Math.max(0, Math.round(latencyMs * factor));
+        return CompletableFuture.supplyAsync(TaskResult::empty,
+            CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS));
+    }
+}
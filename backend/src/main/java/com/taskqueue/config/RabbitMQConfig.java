@@ -1,5 +1,6 @@
 package com.taskqueue.config;
 
+import com.taskqueue.queue.TaskMessageConverter;
 import org.springframework.amqp.core.*;
 import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
@@ -21,6 +22,9 @@ public class RabbitMQConfig {
     public static final String DEAD_LETTER_QUEUE = "queue.tasks.dlq";
     public static final String DEAD_LETTER_EXCHANGE = "dlx.exchange";
     public static final String DEAD_LETTER_ROUTING_KEY = "dlq.routing.key";
+    public static final String BATCH_CONTAINER_FACTORY = "batchRabbitListenerContainerFactory";
+    public static final String HANDOFF_CONTAINER_FACTORY = "handoffRabbitListenerContainerFactory";
+    public static final String FAIR_CONTAINER_FACTORY = "fairRabbitListenerContainerFactory";
     
     @Bean
     public Queue highPriorityQueue() {
@@ -70,26 +74,76 @@ public class RabbitMQConfig {
     }
     
     @Bean
-    public MessageConverter jsonMessageConverter() {
-        return new Jackson2JsonMessageConverter();
+    public MessageConverter taskMessageConverter(TaskQueueProperties properties) {
+        return new TaskMessageConverter(new Jackson2JsonMessageConverter(), properties.getMessaging());
     }
     
     @Bean
-    public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory) {
+    public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory, MessageConverter messageConverter) {
         RabbitTemplate template = new RabbitTemplate(connectionFactory);
-        template.setMessageConverter(jsonMessageConverter());
+        template.setMessageConverter(messageConverter);
         return template;
     }
     
     @Bean
     public SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(
-            ConnectionFactory connectionFactory) {
+            ConnectionFactory connectionFactory, MessageConverter messageConverter) {
         SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
         factory.setConnectionFactory(connectionFactory);
-        factory.setMessageConverter(jsonMessageConverter());
+        factory.setMessageConverter(messageConverter);
         factory.setConcurrentConsumers(3);
         factory.setMaxConcurrentConsumers(10);
         factory.setPrefetchCount(10);
         return factory;
     }
+    
+    @Bean(BATCH_CONTAINER_FACTORY)
+    public SimpleRabbitListenerContainerFactory batchRabbitListenerContainerFactory(
+            ConnectionFactory connectionFactory, MessageConverter messageConverter, TaskQueueProperties properties) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(messageConverter);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        
+        // Batch size and receive timeout are tuned per queue
+        factory.setContainerCustomizer(container -> {
+            TaskQueueProperties.QueueBatch batch = properties.getWorker().batchFor(container.getQueueNames()[0]);
+            container.setBatchSize(batch.getBatchSize());
+            container.setReceiveTimeout(batch.getReceiveTimeout());
+            container.setPrefetchCount(Math.max(batch.getBatchSize(), 10));
+        });
+        return factory;
+    }
+    
+    @Bean(HANDOFF_CONTAINER_FACTORY)
+    public SimpleRabbitListenerContainerFactory handoffRabbitListenerContainerFactory(
+            ConnectionFactory connectionFactory, MessageConverter messageConverter, TaskQueueProperties properties) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(messageConverter);
+        // Acks are sent from the virtual thread once the task has finished
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        // Consumers and prefetch per queue bound the unacked window by the in-flight limits
+        factory.setContainerCustomizer(container -> {
+            TaskQueueProperties.Virtual virtual = properties.getWorker().getVirtual();
+            String queue = container.getQueueNames()[0];
+            container.setConcurrentConsumers(virtual.consumersFor(queue));
+            container.setPrefetchCount(virtual.prefetchFor(queue));
+        });
+        return factory;
+    }
+    
+    @Bean(FAIR_CONTAINER_FACTORY)
+    public SimpleRabbitListenerContainerFactory fairRabbitListenerContainerFactory(
+            ConnectionFactory connectionFactory, MessageConverter messageConverter, TaskQueueProperties properties) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(messageConverter);
+        // Acks are sent once the fair scheduler has run the task
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setPrefetchCount(properties.getWorker().getFair().getPrefetch());
+        return factory;
+    }
 }
@@ -0,0 +1,315 @@
+package com.taskqueue.config;
+
+import com.taskqueue.model.Priority;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "task-queue")
+public class TaskQueueProperties {
+    
+    private Queue queue = new Queue();
+    private Worker worker = new Worker();
+    private Retry retry = new Retry();
+    private Submission submission = new Submission();
+    private Outbox outbox = new Outbox();
+    private Messaging messaging = new Messaging();
+    private Metrics metrics = new Metrics();
+    private QueueDepth queueDepth = new QueueDepth();
+    private Websocket websocket = new Websocket();
+    private Listing listing = new Listing();
+    private StatusCache statusCache = new StatusCache();
+    private Scheduler scheduler = new Scheduler();
+    private Cancellation cancellation = new Cancellation();
+    private Workflow workflow = new Workflow();
+    // Per task type bulkhead and rate limit; unlisted types are unlimited
+    private Map<String, ExecutorLimit> executorLimits = new HashMap<>();
+    private Benchmark benchmark = new Benchmark();
+    private LoadTest loadtest = new LoadTest();
+    
+    @Data
+    public static class Queue {
+        // "amqp" publishes through RabbitMQ, "postgres" claims rows with SKIP LOCKED
+        private String backend = "amqp";
+        private Postgres postgres = new Postgres();
+    }
+    
+    @Data
+    public static class Postgres {
+        // Tasks executing at once on this instance
+        private int concurrency = 20;
+        private int claimBatchSize = 50;
+        // Fallback poll when no NOTIFY arrives; also bounds retry/schedule pickup delay
+        private long pollInterval = 1000;
+    }
+    
+    @Data
+    public static class Worker {
+        private int threadPoolSize = 10;
+        // "single" processes one message per listener call, "batch" uses consumer batching,
+        // "virtual" hands each message off to a virtual thread, "fair" feeds all queues
+        // into one weighted scheduler
+        private String mode = "single";
+        // Consumer batch settings keyed by queue name; unlisted queues use the defaults
+        private Map<String, QueueBatch> batch = new HashMap<>();
+        private Virtual virtual = new Virtual();
+        private Fair fair = new Fair();
+        private Lease lease = new Lease();
+        
+        public QueueBatch batchFor(String queueName) {
+            return batch.getOrDefault(queueName, new QueueBatch());
+        }
+    }
+    
+    @Data
+    public static class QueueBatch {
+        private int batchSize = 50;
+        // Max time (ms) a consumer waits to fill a batch before handing over what it has
+        private long receiveTimeout = 200;
+    }
+    
+    @Data
+    public static class Virtual {
+        // Consumers per queue, keyed by queue name; unlisted queues get one
+        private Map<String, Integer> consumers = new HashMap<>();
+        private int defaultInFlightLimit = 500;
+        // Per task type overrides of the in-flight limit
+        private Map<String, Integer> inFlightLimits = new HashMap<>();
+        
+        public int consumersFor(String queueName) {
+            return Math.max(1, consumers.getOrDefault(queueName, 1));
+        }
+        
+        /**
+         * Unacked messages per consumer of the queue: its consumers together
+         * hold the largest in-flight limit, so a type whose tasks all come
+         * from this queue can reach its limit, while deliveries waiting for a
+         * type at its limit fill the window and stop the broker.
+         */
+        public int prefetchFor(String queueName) {
+            int largestLimit = inFlightLimits.values().stream()
+                .mapToInt(Integer::intValue)
+                .reduce(defaultInFlightLimit, Math::max);
+            int consumerCount = consumersFor(queueName);
+            // basic.qos caps the prefetch count at an unsigned short
+            return Math.min((largestLimit + consumerCount - 1) / consumerCount, 65535);
+        }
+    }
+    
+    @Data
+    public static class Fair {
+        // Tasks executing at once across all priorities
+        private int concurrency = 20;
+        // Unacked messages per queue; also the capacity of each local lane
+        private int prefetch = 50;
+        // Share of dispatches each priority gets while all lanes are busy
+        private Map<Priority, Double> weights = new EnumMap<>(Map.of(
+            Priority.HIGH, 6.0, Priority.MEDIUM, 3.0, Priority.LOW, 1.0));
+        // A lane whose head waited in it longer than this (ms) gets the top-up of the heaviest lane
+        private long agingThreshold = 30000;
+    }
+    
+    @Data
+    public static class Lease {
+        // Workers refresh their registry entry and their running tasks' leases this often (ms)
+        private long heartbeatInterval = 5000;
+        // A worker and its running tasks are presumed dead this long (ms) after the last heartbeat
+        private long ttl = 30000;
+        private long reapInterval = 10000;
+        // Max orphaned tasks recovered per transaction
+        private int reapBatchSize = 500;
+    }
+    
+    @Data
+    public static class Retry {
+        private int maxAttempts = 3;
+        private double backoffMultiplier = 2;
+        private long initialInterval = 2000;
+        private long maxInterval = 300000;
+        // Fraction of the computed delay randomised in both directions (0.2 = +/-20%)
+        private double jitter = 0.2;
+        // How often due retries are moved back onto the work queues
+        private long pollInterval = 200;
+        private int releaseBatchSize = 500;
+        // How long (ms) a claimed retry is hidden from other instances while it is published
+        private long claimTimeout = 30000;
+    }
+    
+    @Data
+    public static class Submission {
+        // Upper bound on tasks accepted by a single batch request
+        private int maxBatchSize = 1000;
+        // Rows per JDBC batch / transaction when persisting a batch
+        private int jdbcBatchSize = 500;
+        // How long (ms) an idempotency key maps retries to the original task
+        private long idempotencyTtl = 86400000;
+        // Task types whose identical pending payloads are collapsed into one task
+        private List<String> coalesceTypes = new ArrayList<>();
+        private long coalesceTtl = 600000;
+    }
+    
+    @Data
+    public static class Outbox {
+        private long pollInterval = 100;
+        private int batchSize = 200;
+        // Max wait for publisher confirms before the batch is rolled back
+        private long confirmTimeout = 5000;
+    }
+    
+    @Data
+    public static class Messaging {
+        // Format tasks are published in: "json" or "binary"; consumers read both
+        private String codec = "json";
+        // "none" or "lz4"; only applies to the binary codec
+        private String compression = "none";
+        // Encoded size (bytes) from which messages are compressed
+        private int compressionThreshold = 1024;
+    }
+    
+    @Data
+    public static class Metrics {
+        // How often in-process counters and latencies are merged into Redis
+        private long flushInterval = 500;
+        // Latency histogram range (ms) and precision; larger values are clamped
+        private long highestTrackableLatency = 3600000;
+        private int significantDigits = 3;
+        // How long a computed /metrics response is served to other callers
+        private long responseCacheTtl = 1000;
+        // How often the status counts are checked for a missing seed (ms)
+        private long statusCountsCheckInterval = 30000;
+    }
+    
+    @Data
+    public static class QueueDepth {
+        // How often queue depth is sampled from the broker
+        private long sampleInterval = 1000;
+        // A sample older than this (ms) is served without a wait estimate
+        private long maxStaleness = 5000;
+    }
+    
+    @Data
+    public static class Websocket {
+        // "simple" uses the in-JVM broker, "relay" forwards to RabbitMQ's STOMP plugin
+        private String broker = "simple";
+        // Server-side STOMP heartbeat (ms) for the simple broker
+        private long heartbeatInterval = 10000;
+        // Status updates are coalesced per task and pushed once per interval (ms)
+        private long flushInterval = 200;
+        // Max updates per /topic/tasks frame; larger flushes are split
+        private int maxBatchSize = 500;
+        private Relay relay = new Relay();
+    }
+    
+    @Data
+    public static class Listing {
+        private int defaultPageSize = 50;
+        private int maxPageSize = 500;
+        // Rows fetched per keyset page while streaming an NDJSON export
+        private int exportPageSize = 1000;
+    }
+    
+    @Data
+    public static class StatusCache {
+        private long nearMaxSize = 10000;
+        // Upper bound on staleness should an invalidation message be missed
+        private long nearTtl = 5000;
+    }
+    
+    @Data
+    public static class Scheduler {
+        // Timing wheel resolution (ms) and bucket count
+        private long tickMs = 10;
+        private int wheelSize = 512;
+        // Tasks due within this many ms are loaded into the wheel
+        private long window = 30000;
+        private long loadInterval = 1000;
+        // Rows per page when loading; a load reads pages until the window is covered
+        private int loadBatchSize = 5000;
+        // Only the lease holder loads and dispatches; it renews on every load
+        private long leaseTtl = 10000;
+    }
+    
+    @Data
+    public static class Cancellation {
+        // How long (ms) a cancelled task id is remembered, so messages still queued for it are dropped
+        private long ttl = 3600000;
+        private int maxSize = 1_000_000;
+    }
+    
+    @Data
+    public static class Workflow {
+        private int maxNodes = 1000;
+        // How long (ms) a parent's output waits in Redis for the child that consumes it
+        private long outputTtl = 86400000;
+    }
+    
+    @Data
+    public static class ExecutorLimit {
+        // Max tasks of the type executing at once on this instance (0 = unlimited)
+        private int maxConcurrent = 0;
+        // Token bucket refill rate (0 = unlimited) and capacity (0 = one second's worth)
+        private double ratePerSecond = 0;
+        private int burst = 0;
+        // Share the bucket across instances through Redis instead of per instance
+        private boolean distributed = false;
+        // Deferral delay (ms) when the bulkhead is full
+        private long bulkheadRetryDelay = 1000;
+        // Execution time (ms) after which the task is interrupted and failed (0 = no limit)
+        private long timeout = 0;
+    }
+    
+    @Data
+    public static class Benchmark {
+        // Only used with the "benchmark" profile
+        private int tasks = 10000;
+        private int batchSize = 500;
+        private long timeout = 300000;
+    }
+    
+    @Data
+    public static class LoadTest {
+        // Only used with the "loadtest" profile; false serves synthetic executors without driving load
+        private boolean drive = true;
+        private String targetUrl = "http://localhost:8080/api";
+        // Open-loop arrival rates (tasks/s), one step each
+        private List<Integer> rates = new ArrayList<>(List.of(50, 100, 200, 400));
+        private long stepDuration = 60000;
+        // Time (ms) to wait for a step's tasks to finish before the next step starts
+        private long drainTimeout = 60000;
+        // Relative weights of the submitted task types and priorities
+        private Map<String, Integer> mix = new HashMap<>(Map.of(
+            "EMAIL_SEND", 70, "IMAGE_PROCESS", 20, "REPORT_GENERATE", 10));
+        private Map<Priority, Integer> priorities = new EnumMap<>(Map.of(
+            Priority.HIGH, 20, Priority.MEDIUM, 50, Priority.LOW, 30));
+        // Synthetic executor latency (ms) per task type, varied by +/- jitter
+        private Map<String, Long> latency = new HashMap<>(Map.of(
+            "EMAIL_SEND", 50L, "IMAGE_PROCESS", 200L, "REPORT_GENERATE", 1000L));
+        private double jitter = 0.2;
+        // A step is over the ceiling if any priority's p99 (ms) exceeds this
+        // or completions fall below saturationRatio of the offered rate
+        private long sloP99 = 5000;
+        private double saturationRatio = 0.95;
+        private String reportFile = "target/loadtest-report.json";
+    }
+    
+    @Data
+    public static class Relay {
+        private String host = "localhost";
+        private int port = 61613;
+        private String virtualHost = "/";
+        private String login = "guest";
+        private String passcode = "guest";
+        // Each client session holds its own broker connection, plus one shared system connection
+        private int maxConnections = 500;
+        private long connectTimeout = 5000;
+        private long systemHeartbeatInterval = 10000;
+    }
+}
@@ -1,21 +1,90 @@
 package com.taskqueue.config;
 
+import io.netty.channel.ChannelOption;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.task.ThreadPoolTaskSchedulerBuilder;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.stomp.StompReactorNettyCodec;
+import org.springframework.messaging.tcp.reactor.ReactorNettyTcpClient;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.util.AntPathMatcher;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.tcp.TcpClient;
 
 @Configuration
 @EnableWebSocketMessageBroker
+@RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     
+    public static final String RELAY_BROKER = "relay";
+    
+    private final TaskQueueProperties properties;
+    
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic", "/queue");
+        TaskQueueProperties.Websocket websocket = properties.getWebsocket();
+        if (RELAY_BROKER.equals(websocket.getBroker())) {
+            configureBrokerRelay(config, websocket.getRelay());
+        } else {
+            // In-JVM broker: updates only reach clients connected to this instance
+            config.enableSimpleBroker("/topic", "/queue")
+                .setHeartbeatValue(new long[] {websocket.getHeartbeatInterval(), websocket.getHeartbeatInterval()})
+                .setTaskScheduler(heartbeatScheduler());
+        }
         config.setApplicationDestinationPrefixes("/app");
     }
     
+    /**
+     * Relays /topic and /queue to RabbitMQ's STOMP plugin so every instance
+     * can publish to, and every dashboard node can serve, the same topics.
+     * RabbitMQ maps /topic/x.y onto amq.topic routing keys, hence "." as the
+     * destination separator.
+     */
+    private void configureBrokerRelay(MessageBrokerRegistry config, TaskQueueProperties.Relay relay) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("stomp-relay")
+            .maxConnections(relay.getMaxConnections())
+            .build();
+        TcpClient tcpClient = TcpClient.create(connectionProvider)
+            .host(relay.getHost())
+            .port(relay.getPort())
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, Math.toIntExact(relay.getConnectTimeout()));
+        
+        config.enableStompBrokerRelay("/topic", "/queue")
+            .setTcpClient(new ReactorNettyTcpClient<>(tcpClient, new StompReactorNettyCodec()))
+            .setVirtualHost(relay.getVirtualHost())
+            .setClientLogin(relay.getLogin())
+            .setClientPasscode(relay.getPasscode())
+            .setSystemLogin(relay.getLogin())
+            .setSystemPasscode(relay.getPasscode())
+            .setSystemHeartbeatSendInterval(relay.getSystemHeartbeatInterval())
+            .setSystemHeartbeatReceiveInterval(relay.getSystemHeartbeatInterval());
+        config.setPathMatcher(new AntPathMatcher("."));
+    }
+    
+    // A bean so the context shuts it down; calls from configureMessageBroker get the singleton
+    @Bean
+    public ThreadPoolTaskScheduler heartbeatScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("ws-heartbeat-");
+        return scheduler;
+    }
+    
+    /**
+     * The scheduler for @Scheduled jobs, sized by spring.task.scheduling.
+     * Boot backs off its own once the broker schedulers above exist, and
+     * with several schedulers around @Scheduled looks for this name.
+     */
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(ThreadPoolTaskSchedulerBuilder builder) {
+        return builder.build();
+    }
+    
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/ws")
@@ -1,10 +1,16 @@
 package com.taskqueue.controller;
 
+import com.taskqueue.dto.BatchTaskRequest;
+import com.taskqueue.dto.BatchTaskResponse;
+import com.taskqueue.dto.TaskFilter;
+import com.taskqueue.dto.TaskPageResponse;
 import com.taskqueue.dto.TaskRequest;
 import com.taskqueue.dto.TaskResponse;
+import com.taskqueue.model.Priority;
 import com.taskqueue.model.Task;
 import com.taskqueue.model.TaskStatus;
 import com.taskqueue.repository.TaskRepository;
+import com.taskqueue.service.TaskQueryService;
 import com.taskqueue.service.TaskSubmissionService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -13,8 +19,10 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -26,11 +34,21 @@ public class TaskController {
     
     private final TaskSubmissionService taskSubmissionService;
     private final TaskRepository taskRepository;
+    private final TaskQueryService taskQueryService;
     
     @PostMapping("/submit")
-    public ResponseEntity<TaskResponse> submitTask(@Valid @RequestBody TaskRequest request) {
+    public ResponseEntity<TaskResponse> submitTask(@Valid @RequestBody TaskRequest request,
+                                                   @RequestHeader(value = "Idempotency-Key", required = false)
+                                                   String idempotencyKey) {
         log.info("Received task submission request: type={}, priority={}", 
                  request.getTaskType(), request.getPriority());
+        if (idempotencyKey != null && !idempotencyKey.isBlank()) {
+            // The header bypasses bean validation of the body, so check it here
+            if (idempotencyKey.length() > 255) {
+                return ResponseEntity.badRequest().build();
+            }
+            request.setIdempotencyKey(idempotencyKey);
+        }
         
         try {
             TaskResponse response = taskSubmissionService.submitTask(request);
@@ -44,6 +62,23 @@ public class TaskController {
         }
     }
     
+    @PostMapping("/submit/batch")
+    public ResponseEntity<BatchTaskResponse> submitBatch(@Valid @RequestBody BatchTaskRequest request) {
+        log.info("Received batch submission request: {} tasks", request.getTasks().size());
+        
+        try {
+            BatchTaskResponse response = taskSubmissionService.submitBatch(request.getTasks());
+            HttpStatus status = response.getSubmitted() > 0 ? HttpStatus.CREATED : HttpStatus.BAD_REQUEST;
+            return ResponseEntity.status(status).body(response);
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid batch submission: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error submitting task batch", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
     @GetMapping("/{taskId}")
     public ResponseEntity<TaskResponse> getTaskStatus(@PathVariable String taskId) {
         try {
@@ -77,15 +112,45 @@ public class TaskController {
         return ResponseEntity.ok(tasks);
     }
     
+    /**
+     * Cursor-paginated listing, newest first. Pass the returned
+     * {@code nextCursor} to fetch the following page.
+     */
+    @GetMapping("/cursor")
+    public ResponseEntity<TaskPageResponse> listTasks(
+            @RequestParam(required = false) TaskStatus status,
+            @RequestParam(required = false) String taskType,
+            @RequestParam(required = false) Priority priority,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        
+        TaskFilter filter = new TaskFilter(status, taskType, priority);
+        try {
+            return ResponseEntity.ok(taskQueryService.listTasks(filter, cursor, limit, includeTotal));
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid task listing request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportTasks(
+            @RequestParam(required = false) TaskStatus status,
+            @RequestParam(required = false) String taskType,
+            @RequestParam(required = false) Priority priority) {
+        
+        TaskFilter filter = new TaskFilter(status, taskType, priority);
+        StreamingResponseBody body = out -> taskQueryService.exportTasks(filter, out);
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType("application/x-ndjson"))
+            .body(body);
+    }
+    
     @DeleteMapping("/{taskId}")
     public ResponseEntity<Void> cancelTask(@PathVariable String taskId) {
         try {
-            Task task = taskRepository.findByTaskId(taskId)
-                .orElseThrow(() -> new IllegalArgumentException("Task not found"));
-            
-            if (task.getStatus() == TaskStatus.PENDING) {
-                task.setStatus(TaskStatus.CANCELLED);
-                taskRepository.save(task);
+            if (taskSubmissionService.cancelTask(taskId)) {
                 return ResponseEntity.ok().build();
             } else {
                 return ResponseEntity.badRequest().build();
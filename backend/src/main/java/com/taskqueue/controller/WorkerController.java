@@ -0,0 +1,24 @@
+package com.taskqueue.controller;
+
+import com.taskqueue.dto.WorkerInfo;
+import com.taskqueue.service.WorkerRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/workers")
+@RequiredArgsConstructor
+public class WorkerController {
+    
+    private final WorkerRegistry workerRegistry;
+    
+    @GetMapping
+    public ResponseEntity<List<WorkerInfo>> getLiveWorkers() {
+        return ResponseEntity.ok(workerRegistry.getLiveWorkers());
+    }
+}
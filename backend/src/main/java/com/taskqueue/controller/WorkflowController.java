@@ -0,0 +1,45 @@
+package com.taskqueue.controller;
+
+import com.taskqueue.dto.WorkflowRequest;
+import com.taskqueue.dto.WorkflowResponse;
+import com.taskqueue.service.WorkflowService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@Slf4j
+@RestController
+@RequestMapping("/workflows")
+@RequiredArgsConstructor
+public class WorkflowController {
+    
+    private final WorkflowService workflowService;
+    
+    @PostMapping
+    public ResponseEntity<WorkflowResponse> submitWorkflow(@Valid @RequestBody WorkflowRequest request) {
+        log.info("Received workflow submission request: {} nodes", request.getNodes().size());
+        
+        try {
+            WorkflowResponse response = workflowService.submitWorkflow(request);
+            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid workflow submission: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error submitting workflow", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
+    @GetMapping("/{workflowId}")
+    public ResponseEntity<WorkflowResponse> getWorkflow(@PathVariable String workflowId) {
+        try {
+            return ResponseEntity.ok(workflowService.getWorkflow(workflowId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+}
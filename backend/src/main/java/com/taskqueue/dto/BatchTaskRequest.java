@@ -0,0 +1,20 @@
+package com.taskqueue.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchTaskRequest {
+    
+    // Items are validated individually so one bad entry doesn't reject the batch
+    @NotEmpty(message = "At least one task is required")
+    private List<TaskRequest> tasks;
+}
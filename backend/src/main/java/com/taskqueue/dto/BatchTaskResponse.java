@@ -0,0 +1,30 @@
+package com.taskqueue.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchTaskResponse {
+    
+    private Integer submitted;
+    private Integer failed;
+    private List<ItemResult> results;
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ItemResult {
+        private Integer index;
+        private Boolean success;
+        private TaskResponse task;
+        private String error;
+    }
+}
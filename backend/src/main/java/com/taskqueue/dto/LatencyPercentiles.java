@@ -0,0 +1,20 @@
+package com.taskqueue.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LatencyPercentiles {
+    
+    private Long count;
+    private Double mean;
+    private Long p50;
+    private Long p99;
+    private Long p999;
+    private Long max;
+}
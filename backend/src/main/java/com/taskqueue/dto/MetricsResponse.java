@@ -1,5 +1,6 @@
 package com.taskqueue.dto;
 
+import com.taskqueue.model.TaskStatus;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -20,5 +21,8 @@ public class MetricsResponse {
     private Long processingTasks;
     private Double avgProcessingTime;
     private Map<String, Integer> queueSizes;
+    private Map<String, QueueDepth> queueDepths;
     private Double successRate;
+    private Map<String, LatencyPercentiles> latencyByType;
+    private Map<String, Map<TaskStatus, Long>> statusCountsByType;
 }
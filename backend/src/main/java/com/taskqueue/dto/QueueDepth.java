@@ -0,0 +1,23 @@
+package com.taskqueue.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueueDepth {
+    
+    private String queue;
+    private Long messageCount;
+    private Integer consumerCount;
+    // Tasks picked up from this queue per second, smoothed across samples
+    private Double dequeueRate;
+    private Long estimatedWaitMs;
+    private Instant sampledAt;
+}
@@ -0,0 +1,19 @@
+package com.taskqueue.dto;
+
+import com.taskqueue.model.Priority;
+import com.taskqueue.model.TaskStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskFilter {
+    
+    private TaskStatus status;
+    private String taskType;
+    private Priority priority;
+}
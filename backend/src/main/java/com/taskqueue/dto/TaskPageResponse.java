@@ -0,0 +1,21 @@
+package com.taskqueue.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskPageResponse {
+    
+    private List<TaskSummary> items;
+    // Null on the last page
+    private String nextCursor;
+    // Only computed when requested
+    private Long total;
+}
@@ -3,6 +3,7 @@ package com.taskqueue.dto;
 import com.taskqueue.model.Priority;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -29,4 +30,8 @@ public class TaskRequest {
     private LocalDateTime scheduledAt;
     
     private Integer maxRetries = 3;
+    
+    // Retries carrying the same key return the original task instead of creating another
+    @Size(max = 255, message = "Idempotency key must be at most 255 characters")
+    private String idempotencyKey;
 }
@@ -0,0 +1,35 @@
+package com.taskqueue.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.taskqueue.model.Priority;
+import com.taskqueue.model.TaskStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * List view of a task. Leaves out the payload and error text, which
+ * dominate row size and are only needed when looking at a single task.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskSummary {
+    
+    // Keyset tiebreaker, not part of the API
+    @JsonIgnore
+    private Long id;
+    private String taskId;
+    private String taskType;
+    private Priority priority;
+    private TaskStatus status;
+    private Integer retryCount;
+    private String workerId;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime completedAt;
+}
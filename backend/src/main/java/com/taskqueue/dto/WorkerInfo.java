@@ -0,0 +1,26 @@
+package com.taskqueue.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkerInfo {
+    
+    private String workerId;
+    private String host;
+    private LocalDateTime startedAt;
+    private LocalDateTime lastHeartbeat;
+    private LocalDateTime leaseExpiresAt;
+    private int inFlight;
+    private long completed;
+    private long failed;
+    // Completions per second since the previous heartbeat
+    private double throughput;
+}
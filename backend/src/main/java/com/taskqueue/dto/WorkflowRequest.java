@@ -0,0 +1,43 @@
+package com.taskqueue.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkflowRequest {
+    
+    private String name;
+    
+    // Nodes may be listed in any order; dependencies are checked for cycles on submission
+    @Valid
+    @NotEmpty(message = "At least one node is required")
+    private List<WorkflowNode> nodes;
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class WorkflowNode {
+        
+        @NotBlank(message = "Node id is required")
+        private String id;
+        
+        @Valid
+        @NotNull(message = "Node task is required")
+        private TaskRequest task;
+        
+        // Ids of the nodes whose completion this node waits for
+        private List<String> dependsOn;
+    }
+}
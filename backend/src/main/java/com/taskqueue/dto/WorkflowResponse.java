@@ -0,0 +1,43 @@
+package com.taskqueue.dto;
+
+import com.taskqueue.model.TaskStatus;
+import com.taskqueue.model.WorkflowStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkflowResponse {
+    
+    private String workflowId;
+    private String name;
+    private WorkflowStatus status;
+    private Integer totalTasks;
+    private Integer completedTasks;
+    private Integer failedTasks;
+    private Integer cancelledTasks;
+    private LocalDateTime createdAt;
+    private LocalDateTime completedAt;
+    private List<NodeState> nodes;
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class NodeState {
+        private String id;
+        private String taskId;
+        private String taskType;
+        private TaskStatus status;
+        private List<String> dependsOn;
+        private LocalDateTime completedAt;
+        private String errorMessage;
+    }
+}
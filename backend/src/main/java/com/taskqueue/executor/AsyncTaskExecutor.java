@@ -0,0 +1,23 @@
+package com.taskqueue.executor;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Non-blocking variant of {@link TaskExecutor}. Implementations return
+ * immediately and complete the stage when the work is done, so no worker
+ * thread is held while waiting on I/O.
+ */
+public interface AsyncTaskExecutor {
+    
+    /**
+     * Returns the task type this executor handles
+     */
+    String getTaskType();
+    
+    /**
+     * Starts executing the task
+     * @param context Task identity, payload and progress reporting
+     * @return stage completed with the task result, or exceptionally if the task fails
+     */
+    CompletionStage<TaskResult> executeAsync(TaskContext context);
+}
@@ -0,0 +1,78 @@
+package com.taskqueue.executor;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Signals a running task that it should stop, either because it was
+ * cancelled or because it ran past its type's timeout. Executors can poll
+ * {@link #isCancelled()} or register a callback; blocking executors are also
+ * interrupted.
+ */
+public class CancellationToken {
+    
+    private final List<Runnable> callbacks = new CopyOnWriteArrayList<>();
+    private volatile Exception reason;
+    
+    public boolean isCancelled() {
+        return reason != null;
+    }
+    
+    /**
+     * @throws CancellationException if the task was cancelled or timed out
+     */
+    public void throwIfCancelled() {
+        if (reason != null) {
+            CancellationException e = new CancellationException(reason.getMessage());
+            e.initCause(reason);
+            throw e;
+        }
+    }
+    
+    /**
+     * Runs {@code callback} once the token is cancelled, right away if it
+     * already is.
+     *
+     * @return removes the callback again, e.g. once the work it would stop is done
+     */
+    public Runnable onCancel(Runnable callback) {
+        callbacks.add(callback);
+        if (reason != null && callbacks.remove(callback)) {
+            callback.run();
+        }
+        return () -> callbacks.remove(callback);
+    }
+    
+    /**
+     * Why the token was cancelled: a {@link CancellationException} for a
+     * cancel request, a {@link TimeoutException} for a timeout; null while
+     * the task may still run.
+     */
+    public Exception getReason() {
+        return reason;
+    }
+    
+    public void cancel() {
+        cancel(new CancellationException("Task was cancelled"));
+    }
+    
+    public void timeout(long timeoutMs) {
+        cancel(new TimeoutException("Task timed out after " + timeoutMs + "ms"));
+    }
+    
+    private void cancel(Exception cause) {
+        synchronized (this) {
+            if (reason != null) {
+                return;
+            }
+            reason = cause;
+        }
+        for (Runnable callback : callbacks) {
+            if (callbacks.remove(callback)) {
+                callback.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.taskqueue.executor;
+
+import com.taskqueue.model.Priority;
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+@Value
+@Builder
+public class TaskContext {
+    
+    String taskId;
+    String taskType;
+    Priority priority;
+    
+    /**
+     * The task's payload; for a workflow task that depends on others, with
+     * their outputs by node id under {@code parentOutputs}
+     */
+    Map<String, Object> payload;
+    
+    /**
+     * Zero-based attempt number (equal to the task's retry count)
+     */
+    int attempt;
+    
+    @Builder.Default
+    IntConsumer progressListener = percent -> { };
+    
+    /**
+     * Cancelled when the task is cancelled or times out
+     */
+    @Builder.Default
+    CancellationToken cancellationToken = new CancellationToken();
+    
+    /**
+     * Reports execution progress as a percentage (0-100)
+     */
+    public void reportProgress(int percent) {
+        progressListener.accept(Math.max(0, Math.min(100, percent)));
+    }
+    
+    public boolean isCancelled() {
+        return cancellationToken.isCancelled();
+    }
+}
@@ -0,0 +1,24 @@
+package com.taskqueue.executor;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.Map;
+
+@Value
+@Builder
+public class TaskResult {
+    
+    private static final TaskResult EMPTY = TaskResult.builder().build();
+    
+    @Builder.Default
+    Map<String, Object> output = Map.of();
+    
+    public static TaskResult empty() {
+        return EMPTY;
+    }
+    
+    public static TaskResult of(Map<String, Object> output) {
+        return TaskResult.builder().output(output).build();
+    }
+}
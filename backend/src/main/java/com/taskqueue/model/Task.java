@@ -15,7 +15,14 @@ import java.util.Map;
 @Table(name = "tasks", indexes = {
     @Index(name = "idx_task_status", columnList = "status"),
     @Index(name = "idx_task_priority", columnList = "priority"),
-    @Index(name = "idx_task_created_at", columnList = "created_at")
+    @Index(name = "idx_task_created_at", columnList = "created_at"),
+    // Keyset listing: one (filter, created_at, id) index per supported filter
+    @Index(name = "idx_task_created_id", columnList = "created_at, id"),
+    @Index(name = "idx_task_status_created_id", columnList = "status, created_at, id"),
+    @Index(name = "idx_task_type_created_id", columnList = "task_type, created_at, id"),
+    @Index(name = "idx_task_priority_created_id", columnList = "priority, created_at, id"),
+    @Index(name = "idx_task_idempotency_key", columnList = "idempotency_key", unique = true),
+    @Index(name = "idx_task_workflow_id", columnList = "workflow_id")
 })
 @Data
 @Builder
@@ -30,6 +37,10 @@ public class Task {
     @Column(name = "task_id", unique = true, nullable = false)
     private String taskId;
     
+    // Client-supplied; retries with the same key resolve to this task
+    @Column(name = "idempotency_key")
+    private String idempotencyKey;
+    
     @Column(name = "task_type", nullable = false)
     private String taskType;
     
@@ -57,6 +68,10 @@ public class Task {
     @Column(name = "scheduled_at")
     private LocalDateTime scheduledAt;
     
+    // Set once a scheduled task has been handed to the broker
+    @Column(name = "dispatched_at")
+    private LocalDateTime dispatchedAt;
+    
     @Column(name = "started_at")
     private LocalDateTime startedAt;
     
@@ -69,6 +84,21 @@ public class Task {
     @Column(name = "worker_id")
     private String workerId;
     
+    // Set while PROCESSING and pushed out by the worker's heartbeat; the task is recovered once it lapses
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+    
+    // Set for tasks submitted as part of a workflow; nodeId is the node's id within it
+    @Column(name = "workflow_id")
+    private String workflowId;
+    
+    @Column(name = "node_id")
+    private String nodeId;
+    
+    // Parents still to complete; the task leaves WAITING when this reaches zero
+    @Column(name = "pending_parents")
+    private Integer pendingParents;
+    
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
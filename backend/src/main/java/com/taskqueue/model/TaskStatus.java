@@ -1,6 +1,8 @@
 package com.taskqueue.model;
 
 public enum TaskStatus {
+    // Workflow task whose parents have not all completed yet
+    WAITING,
     PENDING,
     PROCESSING,
     COMPLETED,
@@ -0,0 +1,58 @@
+package com.taskqueue.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "workflows")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class Workflow {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "workflow_id", unique = true, nullable = false)
+    private String workflowId;
+    
+    private String name;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private WorkflowStatus status;
+    
+    @Column(name = "total_tasks", nullable = false)
+    private Integer totalTasks;
+    
+    // Maintained by the workers as tasks finish, with atomic increments
+    @Column(name = "completed_tasks", nullable = false)
+    private Integer completedTasks;
+    
+    @Column(name = "failed_tasks", nullable = false)
+    private Integer failedTasks;
+    
+    @Column(name = "cancelled_tasks", nullable = false)
+    private Integer cancelledTasks;
+    
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+    
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        if (status == null) {
+            status = WorkflowStatus.RUNNING;
+        }
+    }
+}
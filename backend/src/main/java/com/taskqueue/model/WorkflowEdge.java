@@ -0,0 +1,40 @@
+package com.taskqueue.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A dependency between two tasks of a workflow: the child waits for the
+ * parent to complete. Written in bulk through JDBC.
+ */
+@Entity
+@Table(name = "workflow_edges", indexes = {
+    @Index(name = "idx_workflow_edge_parent", columnList = "parent_task_id"),
+    @Index(name = "idx_workflow_edge_workflow", columnList = "workflow_id")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkflowEdge {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "workflow_id", nullable = false)
+    private String workflowId;
+    
+    @Column(name = "parent_task_id", nullable = false)
+    private String parentTaskId;
+    
+    @Column(name = "child_task_id", nullable = false)
+    private String childTaskId;
+    
+    // Set once the parent's completion has been counted against the child
+    @Column(nullable = false)
+    private Boolean released;
+}
@@ -0,0 +1,8 @@
+package com.taskqueue.model;
+
+public enum WorkflowStatus {
+    RUNNING,
+    COMPLETED,
+    // At least one task failed or was cancelled; tasks downstream of it are cancelled
+    FAILED
+}
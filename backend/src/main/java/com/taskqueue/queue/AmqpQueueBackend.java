@@ -0,0 +1,67 @@
+package com.taskqueue.queue;
+
+import com.taskqueue.model.Priority;
+import com.taskqueue.model.Task;
+import com.taskqueue.repository.TaskBatchRepository;
+import com.taskqueue.service.QueueDepthProvider;
+import com.taskqueue.service.RetryScheduler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * RabbitMQ backend. Tasks are written to the transactional outbox and
+ * published by {@link com.taskqueue.service.OutboxRelay}; retries wait in
+ * the {@link RetryScheduler} and are republished when due. Tasks with a
+ * future scheduledAt are left for the
+ * {@link com.taskqueue.service.ScheduledTaskDispatcher}.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "task-queue.queue", name = "backend", havingValue = "amqp", matchIfMissing = true)
+public class AmqpQueueBackend implements QueueBackend {
+    
+    private final TaskBatchRepository taskBatchRepository;
+    private final RetryScheduler retryScheduler;
+    private final AmqpAdmin amqpAdmin;
+    
+    @Override
+    public void enqueue(List<Task> tasks) {
+        // Tasks scheduled for later stay in the table until the dispatcher releases them
+        LocalDateTime now = LocalDateTime.now();
+        List<Task> due = tasks.stream()
+            .filter(task -> task.getScheduledAt() == null || !task.getScheduledAt().isAfter(now))
+            .toList();
+        if (due.isEmpty()) {
+            return;
+        }
+        taskBatchRepository.insertOutbox(due, task -> QueueDepthProvider.queueName(task.getPriority()));
+        
+        // Scheduled in the past: publish now and keep the dispatcher from picking them up again
+        List<String> overdue = due.stream()
+            .filter(task -> task.getScheduledAt() != null)
+            .map(Task::getTaskId)
+            .toList();
+        if (!overdue.isEmpty()) {
+            taskBatchRepository.markDispatched(overdue);
+        }
+    }
+    
+    @Override
+    public void scheduleRetry(Task task, long delayMs) {
+        retryScheduler.schedule(task, delayMs);
+    }
+    
+    @Override
+    public QueueStats getStats(Priority priority) {
+        QueueInformation info = amqpAdmin.getQueueInfo(QueueDepthProvider.queueName(priority));
+        return info != null
+            ? new QueueStats(info.getMessageCount(), info.getConsumerCount())
+            : new QueueStats(0, 0);
+    }
+}
@@ -0,0 +1,53 @@
+package com.taskqueue.queue;
+
+import com.taskqueue.config.TaskQueueProperties;
+import com.taskqueue.model.Priority;
+import com.taskqueue.model.Task;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Postgres backend. A PENDING row already is the queue entry, so enqueueing
+ * only sends a NOTIFY (delivered when the submitting transaction commits)
+ * to wake up the {@link PostgresQueueConsumer}s.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "task-queue.queue", name = "backend", havingValue = "postgres")
+public class PostgresQueueBackend implements QueueBackend {
+    
+    public static final String NOTIFY_CHANNEL = "task_queue";
+    
+    private static final String COUNT_READY_SQL =
+        "SELECT COUNT(*) FROM tasks WHERE status = 'PENDING' AND priority = ? " +
+        "AND (scheduled_at IS NULL OR scheduled_at <= ?)";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TaskQueueProperties properties;
+    
+    @Override
+    public void enqueue(List<Task> tasks) {
+        if (!tasks.isEmpty()) {
+            // Identical notifications within one transaction are folded into one
+            jdbcTemplate.execute("NOTIFY " + NOTIFY_CHANNEL);
+        }
+    }
+    
+    @Override
+    public void scheduleRetry(Task task, long delayMs) {
+        // Nothing to do: the row is PENDING and becomes claimable at scheduled_at
+    }
+    
+    @Override
+    public QueueStats getStats(Priority priority) {
+        Long ready = jdbcTemplate.queryForObject(COUNT_READY_SQL, Long.class,
+            priority.name(), Timestamp.valueOf(LocalDateTime.now()));
+        return new QueueStats(ready != null ? ready : 0, properties.getQueue().getPostgres().getConcurrency());
+    }
+}
@@ -0,0 +1,170 @@
+package com.taskqueue.queue;
+
+import com.taskqueue.config.TaskQueueProperties;
+import com.taskqueue.model.Task;
+import com.taskqueue.model.TaskStatus;
+import com.taskqueue.repository.TaskBatchRepository;
+import com.taskqueue.service.TaskWorkerService;
+import com.taskqueue.service.WorkerRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Claims PENDING rows with FOR UPDATE SKIP LOCKED and runs them through
+ * {@link TaskWorkerService#processClaimedTask}. One claimer thread takes as many
+ * rows as there are free execution slots; a second thread holds a LISTEN
+ * connection so new submissions wake the claimer immediately instead of
+ * waiting for the next poll.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "task-queue.queue", name = "backend", havingValue = "postgres")
+public class PostgresQueueConsumer implements SmartLifecycle {
+    
+    // Partial index: only PENDING rows, in claim order
+    private static final String CLAIM_INDEX = "idx_task_pending_claim";
+    private static final String CLAIM_INDEX_DEFINITION =
+        "((CASE priority WHEN 'HIGH' THEN 0 WHEN 'MEDIUM' THEN 1 ELSE 2 END), created_at) WHERE status = 'PENDING'";
+    
+    private final TaskBatchRepository taskBatchRepository;
+    private final TaskWorkerService taskWorkerService;
+    private final WorkerRegistry workerRegistry;
+    private final DataSourceProperties dataSourceProperties;
+    private final TaskQueueProperties properties;
+    
+    private final Semaphore wakeup = new Semaphore(0);
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private Semaphore slots;
+    private Thread claimer;
+    private Thread listener;
+    private volatile boolean running;
+    
+    public int getConcurrency() {
+        return properties.getQueue().getPostgres().getConcurrency();
+    }
+    
+    @Override
+    public void start() {
+        try {
+            // Built concurrently, so a fresh deployment does not hold up writes to a populated table
+            taskBatchRepository.createIndexConcurrently(CLAIM_INDEX, CLAIM_INDEX_DEFINITION);
+        } catch (RuntimeException e) {
+            log.warn("Could not create task claim index: {}", e.getMessage());
+        }
+        slots = new Semaphore(getConcurrency());
+        running = true;
+        claimer = Thread.ofPlatform().name("pg-queue-claimer").daemon().start(this::claimLoop);
+        listener = Thread.ofPlatform().name("pg-queue-listener").daemon().start(this::listenLoop);
+        log.info("Postgres queue consumer started with {} slots", getConcurrency());
+    }
+    
+    @Override
+    public void stop() {
+        running = false;
+        claimer.interrupt();
+        listener.interrupt();
+        executor.close();
+    }
+    
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+    
+    private void claimLoop() {
+        TaskQueueProperties.Postgres config = properties.getQueue().getPostgres();
+        while (running) {
+            try {
+                slots.acquire();
+                int held = 1 + slots.drainPermits();
+                List<Task> claimed;
+                try {
+                    claimed = taskBatchRepository.claimPending(Math.min(held, config.getClaimBatchSize()),
+                        workerRegistry.getWorkerId(), workerRegistry.leaseDeadline());
+                } catch (RuntimeException e) {
+                    slots.release(held);
+                    throw e;
+                }
+                // Every permit held beyond the claimed rows goes back, including those over the batch size
+                slots.release(held - claimed.size());
+                
+                claimed.forEach(this::start);
+                
+                if (claimed.isEmpty()) {
+                    // Sleep until a NOTIFY arrives; the timeout also picks up due retries and scheduled tasks
+                    wakeup.tryAcquire(config.getPollInterval(), TimeUnit.MILLISECONDS);
+                    wakeup.drainPermits();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Claiming tasks failed: {}", e.getMessage());
+                sleepQuietly(config.getPollInterval());
+            }
+        }
+    }
+    
+    private void start(Task task) {
+        // The claim already marked the row PROCESSING; processClaimedTask performs the
+        // PENDING -> PROCESSING transition (status counts, cache, broadcast) itself
+        task.setStatus(TaskStatus.PENDING);
+        executor.execute(() -> {
+            try {
+                taskWorkerService.processClaimedTask(task, task.getPriority().name())
+                    .whenComplete((result, error) -> slots.release());
+            } catch (RuntimeException e) {
+                log.error("Failed to start task {}: {}", task.getTaskId(), e.getMessage(), e);
+                slots.release();
+            }
+        });
+    }
+    
+    private void listenLoop() {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + PostgresQueueBackend.NOTIFY_CHANNEL);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(1000);
+                    if (notifications != null && notifications.length > 0) {
+                        wakeup.release();
+                    }
+                }
+            } catch (SQLException e) {
+                if (running) {
+                    log.warn("LISTEN connection lost, reconnecting: {}", e.getMessage());
+                    sleepQuietly(properties.getQueue().getPostgres().getPollInterval());
+                }
+            }
+        }
+    }
+    
+    private void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.taskqueue.queue;
+
+import com.taskqueue.model.Priority;
+import com.taskqueue.model.Task;
+
+import java.util.List;
+
+/**
+ * Moves submitted tasks to workers. Selected with
+ * {@code task-queue.queue.backend}: {@code amqp} (default) publishes through
+ * RabbitMQ, {@code postgres} lets workers claim rows straight from the
+ * tasks table.
+ */
+public interface QueueBackend {
+    
+    /**
+     * Makes newly persisted tasks available to workers. Called inside the
+     * transaction that inserted them, so nothing becomes visible unless the
+     * insert commits.
+     */
+    void enqueue(List<Task> tasks);
+    
+    /**
+     * Makes a failed task available again after {@code delayMs}. The task
+     * has already been saved as PENDING with {@code scheduledAt} set to its
+     * due time.
+     */
+    void scheduleRetry(Task task, long delayMs);
+    
+    QueueStats getStats(Priority priority);
+}
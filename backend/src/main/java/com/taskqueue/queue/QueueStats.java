@@ -0,0 +1,12 @@
+package com.taskqueue.queue;
+
+import lombok.Value;
+
+@Value
+public class QueueStats {
+    
+    // Tasks waiting to be picked up
+    long messageCount;
+    // Consumers currently attached to the queue
+    int consumerCount;
+}
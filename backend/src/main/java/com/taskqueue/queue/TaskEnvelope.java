@@ -0,0 +1,94 @@
+package com.taskqueue.queue;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.taskqueue.model.Priority;
+import com.taskqueue.model.Task;
+import com.taskqueue.model.TaskStatus;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+/**
+ * Wire form of a queued task for the binary codec. Carries only what a
+ * worker reads or writes back when it saves the task; execution fields
+ * (startedAt, completedAt, workerId) are always unset on a queued task and
+ * are left out. Short property names and epoch-microsecond timestamps keep
+ * the encoded size down. New fields must be optional so older readers of
+ * the same schema version can skip them.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+record TaskEnvelope(
+    @JsonProperty("id") Long id,
+    @JsonProperty("t") String taskId,
+    @JsonProperty("ty") String taskType,
+    @JsonProperty("p") Priority priority,
+    @JsonProperty("s") TaskStatus status,
+    @JsonProperty("pl") Map<String, Object> payload,
+    @JsonProperty("rc") Integer retryCount,
+    @JsonProperty("mr") Integer maxRetries,
+    @JsonProperty("ca") Long createdAt,
+    @JsonProperty("sa") Long scheduledAt,
+    @JsonProperty("da") Long dispatchedAt,
+    @JsonProperty("ik") String idempotencyKey,
+    @JsonProperty("em") String errorMessage,
+    @JsonProperty("wf") String workflowId,
+    @JsonProperty("n") String nodeId) {
+    
+    static TaskEnvelope from(Task task) {
+        return new TaskEnvelope(
+            task.getId(),
+            task.getTaskId(),
+            task.getTaskType(),
+            task.getPriority(),
+            task.getStatus(),
+            task.getPayload(),
+            task.getRetryCount(),
+            task.getMaxRetries(),
+            toMicros(task.getCreatedAt()),
+            toMicros(task.getScheduledAt()),
+            toMicros(task.getDispatchedAt()),
+            task.getIdempotencyKey(),
+            task.getErrorMessage(),
+            task.getWorkflowId(),
+            task.getNodeId());
+    }
+    
+    Task toTask() {
+        return Task.builder()
+            .id(id)
+            .taskId(taskId)
+            .taskType(taskType)
+            .priority(priority)
+            .status(status)
+            .payload(payload)
+            .retryCount(retryCount)
+            .maxRetries(maxRetries)
+            .createdAt(fromMicros(createdAt))
+            .scheduledAt(fromMicros(scheduledAt))
+            .dispatchedAt(fromMicros(dispatchedAt))
+            .idempotencyKey(idempotencyKey)
+            .errorMessage(errorMessage)
+            .workflowId(workflowId)
+            .nodeId(nodeId)
+            .build();
+    }
+    
+    // Timestamps are zone-less in the entity; UTC is only used as a fixed reference
+    // point, and microseconds keep the full precision of a Postgres timestamp
+    private static Long toMicros(LocalDateTime time) {
+        if (time == null) {
+            return null;
+        }
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + time.getNano() / 1_000;
+    }
+    
+    private static LocalDateTime fromMicros(Long micros) {
+        if (micros == null) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+            (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,16 @@
+package com.taskqueue.repository;
+
+import com.taskqueue.model.OutboxMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface OutboxMessageRepository extends JpaRepository<OutboxMessage, Long> {
+    
+    // SKIP LOCKED lets several relay instances drain disjoint batches in parallel
+    @Query(value = "SELECT * FROM task_outbox ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<OutboxMessage> lockNextBatch(int limit);
+}
@@ -0,0 +1,471 @@
+package com.taskqueue.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.taskqueue.model.Priority;
+import com.taskqueue.model.Task;
+import com.taskqueue.model.TaskStatus;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Plain JDBC access for bulk task writes. The Task entity uses IDENTITY keys,
+ * which disables Hibernate insert batching, so bulk paths go through here.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class TaskBatchRepository {
+    
+    private static final String INSERT_TASK_COLUMNS =
+        "INSERT INTO tasks (task_id, task_type, priority, status, payload, retry_count, " +
+        "max_retries, created_at, scheduled_at, idempotency_key, workflow_id, node_id, pending_parents) VALUES ";
+    private static final String INSERT_TASK_VALUES = "(?, ?, ?, ?, CAST(? AS jsonb), ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final int INSERT_TASK_PARAMS = 13;
+    // Postgres takes at most 32767 bind parameters per statement
+    private static final int MAX_ROWS_PER_INSERT = Short.MAX_VALUE / INSERT_TASK_PARAMS;
+    private static final String INSERT_TASK_SQL = INSERT_TASK_COLUMNS + INSERT_TASK_VALUES;
+    
+    // Rows whose idempotency key already exists, or repeats within the statement, are skipped
+    private static final String SKIP_DUPLICATE_KEYS = " ON CONFLICT (idempotency_key) DO NOTHING RETURNING task_id";
+    
+    private static final String INSERT_OUTBOX_SQL =
+        "INSERT INTO task_outbox (task_id, routing_key, created_at) VALUES (?, ?, ?)";
+    
+    private static final String UPDATE_TASK_FIELDS =
+        "UPDATE tasks SET status = ?, started_at = ?, completed_at = ?, worker_id = ?, lease_expires_at = ?, " +
+        "retry_count = ?, error_message = ?, scheduled_at = ?, dispatched_at = ? ";
+    
+    // A delivery may only start a task whose row is still PENDING at the attempt the message
+    // carries; stale copies, cancelled tasks and tasks another delivery started don't match
+    private static final String UPDATE_IF_PENDING_SQL =
+        UPDATE_TASK_FIELDS + "WHERE task_id = ? AND status = 'PENDING' AND retry_count = ?";
+    
+    // Writes of a running attempt are fenced on the worker and attempt that hold it, so an
+    // attempt the reaper took away can no longer overwrite the row
+    private static final String UPDATE_IF_PROCESSING_SQL =
+        UPDATE_TASK_FIELDS + "WHERE task_id = ? AND status = 'PROCESSING' AND worker_id = ? AND retry_count = ?";
+    
+    // Takes the oldest ready rows in priority order; SKIP LOCKED lets concurrent
+    // claimers pass over each other's rows instead of queueing on them
+    private static final String CLAIM_SQL =
+        "UPDATE tasks SET status = 'PROCESSING', started_at = ?, worker_id = ?, lease_expires_at = ? WHERE id IN (" +
+        "SELECT id FROM tasks WHERE status = 'PENDING' AND (scheduled_at IS NULL OR scheduled_at <= ?) " +
+        "ORDER BY CASE priority WHEN 'HIGH' THEN 0 WHEN 'MEDIUM' THEN 1 ELSE 2 END, created_at " +
+        "LIMIT ? FOR UPDATE SKIP LOCKED) RETURNING *";
+    
+    // Served by the partial index idx_task_scheduled_due, so only undispatched
+    // scheduled rows up to the horizon are read, never the whole table
+    private static final String DUE_SCHEDULED_SQL =
+        "SELECT task_id, scheduled_at FROM tasks WHERE status = 'PENDING' AND dispatched_at IS NULL " +
+        "AND retry_count = 0 AND scheduled_at IS NOT NULL AND scheduled_at <= ? ";
+    private static final String DUE_SCHEDULED_ORDER = "ORDER BY scheduled_at, task_id LIMIT ?";
+    // Next page: resumes after the last row of the previous one, ties on scheduled_at broken by task_id
+    private static final String DUE_SCHEDULED_AFTER =
+        "AND scheduled_at >= ? AND (scheduled_at, task_id) > (?, ?) ";
+    
+    private static final String MARK_DISPATCHED_SQL =
+        "UPDATE tasks SET dispatched_at = ? WHERE task_id = ANY(?) AND status = 'PENDING' " +
+        "AND dispatched_at IS NULL RETURNING task_id, priority";
+    
+    private static final String RENEW_LEASES_SQL =
+        "UPDATE tasks SET lease_expires_at = ? WHERE worker_id = ? AND status = 'PROCESSING'";
+    
+    // PROCESSING rows whose lease lapsed go back to PENDING as a new attempt, or to
+    // FAILED once out of attempts. Rows from before leases existed fall back to
+    // started_at. SET expressions see the old row, so retry_count + 1 is the new count
+    private static final String RECLAIM_EXPIRED_SQL =
+        "UPDATE tasks t SET retry_count = t.retry_count + 1, " +
+        "status = CASE WHEN t.retry_count + 1 < t.max_retries THEN 'PENDING' ELSE 'FAILED' END, " +
+        "completed_at = CASE WHEN t.retry_count + 1 < t.max_retries THEN NULL ELSE ? END, " +
+        "error_message = 'Lease expired on worker ' || COALESCE(t.worker_id, 'unknown'), " +
+        "worker_id = NULL, lease_expires_at = NULL WHERE t.id IN (" +
+        "SELECT id FROM tasks WHERE status = 'PROCESSING' " +
+        "AND (lease_expires_at < ? OR (lease_expires_at IS NULL AND started_at < ?)) " +
+        "ORDER BY lease_expires_at NULLS FIRST LIMIT ? FOR UPDATE SKIP LOCKED) RETURNING t.*";
+    
+    // Counts one completed parent against each child; a WAITING child whose last parent
+    // this was becomes PENDING. Rows are locked in id order so concurrent parents of
+    // overlapping children cannot deadlock
+    private static final String RELEASE_WAITING_SQL =
+        "UPDATE tasks SET pending_parents = pending_parents - 1, " +
+        "status = CASE WHEN pending_parents = 1 AND status = 'WAITING' THEN 'PENDING' ELSE status END " +
+        "WHERE id IN (SELECT id FROM tasks WHERE task_id = ANY(?) ORDER BY id FOR UPDATE) RETURNING *";
+    
+    // Every task reachable from the given one through workflow edges that is still waiting
+    private static final String CANCEL_DOWNSTREAM_SQL =
+        "WITH RECURSIVE downstream(task_id) AS (" +
+        "SELECT child_task_id FROM workflow_edges WHERE parent_task_id = ? " +
+        "UNION SELECT e.child_task_id FROM workflow_edges e JOIN downstream d ON e.parent_task_id = d.task_id) " +
+        "UPDATE tasks SET status = 'CANCELLED', completed_at = ?, error_message = ? " +
+        "WHERE task_id IN (SELECT task_id FROM downstream) AND status = 'WAITING' RETURNING *";
+    
+    // Locks the row first so the status seen, and returned, is the one the update replaced
+    private static final String CANCEL_SQL =
+        "WITH old AS (SELECT id, status FROM tasks WHERE task_id = ? FOR UPDATE) " +
+        "UPDATE tasks t SET status = 'CANCELLED', completed_at = ? FROM old " +
+        "WHERE t.id = old.id AND old.status IN ('PENDING', 'PROCESSING', 'WAITING') RETURNING old.status";
+    
+    private static final String INVALID_INDEX_SQL =
+        "SELECT EXISTS (SELECT 1 FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid " +
+        "WHERE c.relname = ? AND NOT i.indisvalid)";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    
+    /**
+     * Creates an index on the tasks table, if missing, without blocking
+     * writes to it while it builds. CONCURRENTLY cannot run inside a
+     * transaction, so callers must not hold one.
+     *
+     * @param definition everything after {@code ON tasks}
+     */
+    public void createIndexConcurrently(String name, String definition) {
+        jdbcTemplate.execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + name + " ON tasks " + definition);
+        // An interrupted concurrent build leaves an invalid index that IF NOT EXISTS keeps skipping
+        if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(INVALID_INDEX_SQL, Boolean.class, name))) {
+            log.warn("Index {} is invalid, rebuild it with REINDEX INDEX CONCURRENTLY {}", name, name);
+        }
+    }
+    
+    public void insertAll(List<Task> tasks) {
+        setCreatedAt(tasks);
+        jdbcTemplate.batchUpdate(INSERT_TASK_SQL, tasks, tasks.size(), (ps, task) -> setInsertFields(ps, 0, task));
+    }
+    
+    /**
+     * Inserts the tasks with multi-row statements, skipping those whose
+     * idempotency key is already taken, by an existing row or an earlier
+     * task in the list. The RETURNING clause says which rows went in; batch
+     * update counts can't, since reWriteBatchedInserts reports them as
+     * unknown. Each statement stays under the bind parameter limit.
+     *
+     * @return the ids of the tasks inserted
+     */
+    public Set<String> insertAllSkippingDuplicates(List<Task> tasks) {
+        setCreatedAt(tasks);
+        Set<String> inserted = new HashSet<>();
+        for (int start = 0; start < tasks.size(); start += MAX_ROWS_PER_INSERT) {
+            List<Task> rows = tasks.subList(start, Math.min(start + MAX_ROWS_PER_INSERT, tasks.size()));
+            String sql = INSERT_TASK_COLUMNS + String.join(", ", Collections.nCopies(rows.size(), INSERT_TASK_VALUES))
+                + SKIP_DUPLICATE_KEYS;
+            inserted.addAll(jdbcTemplate.query(sql, ps -> {
+                for (int i = 0; i < rows.size(); i++) {
+                    setInsertFields(ps, i * INSERT_TASK_PARAMS, rows.get(i));
+                }
+            }, (rs, rowNum) -> rs.getString("task_id")));
+        }
+        return inserted;
+    }
+    
+    private static void setCreatedAt(List<Task> tasks) {
+        LocalDateTime now = LocalDateTime.now();
+        tasks.forEach(task -> {
+            if (task.getCreatedAt() == null) {
+                task.setCreatedAt(now);
+            }
+        });
+    }
+    
+    private void setInsertFields(PreparedStatement ps, int offset, Task task) throws SQLException {
+        ps.setString(offset + 1, task.getTaskId());
+        ps.setString(offset + 2, task.getTaskType());
+        ps.setString(offset + 3, task.getPriority().name());
+        ps.setString(offset + 4, task.getStatus().name());
+        ps.setString(offset + 5, toJson(task));
+        ps.setInt(offset + 6, task.getRetryCount());
+        ps.setInt(offset + 7, task.getMaxRetries());
+        ps.setTimestamp(offset + 8, Timestamp.valueOf(task.getCreatedAt()));
+        setTimestamp(ps, offset + 9, task.getScheduledAt());
+        ps.setString(offset + 10, task.getIdempotencyKey());
+        ps.setString(offset + 11, task.getWorkflowId());
+        ps.setString(offset + 12, task.getNodeId());
+        ps.setObject(offset + 13, task.getPendingParents(), Types.INTEGER);
+    }
+    
+    /**
+     * Writes the task's execution fields if its row is still PENDING with
+     * {@code retryCount} retries.
+     *
+     * @return false if the row moved on, e.g. the task was cancelled or
+     *         another delivery of it started first
+     */
+    public boolean updateIfPending(Task task, int retryCount) {
+        return jdbcTemplate.update(UPDATE_IF_PENDING_SQL, ps -> {
+            int index = setExecutionFields(ps, task);
+            ps.setString(index++, task.getTaskId());
+            ps.setInt(index, retryCount);
+        }) > 0;
+    }
+    
+    /**
+     * Writes the task's execution fields if {@code workerId} is still
+     * running attempt {@code retryCount} of it.
+     *
+     * @return false if the row moved on, e.g. the task was cancelled or its
+     *         lease lapsed and it was recovered
+     */
+    public boolean updateIfProcessing(Task task, String workerId, int retryCount) {
+        return jdbcTemplate.update(UPDATE_IF_PROCESSING_SQL, ps -> {
+            int index = setExecutionFields(ps, task);
+            ps.setString(index++, task.getTaskId());
+            ps.setString(index++, workerId);
+            ps.setInt(index, retryCount);
+        }) > 0;
+    }
+    
+    /**
+     * {@link #updateIfPending} for many tasks in a single batch, each
+     * expected at its current retry count.
+     *
+     * @return for each task, whether its row was written
+     */
+    public boolean[] updateAllIfPending(List<Task> tasks) {
+        return written(jdbcTemplate.batchUpdate(UPDATE_IF_PENDING_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Task task = tasks.get(i);
+                int index = setExecutionFields(ps, task);
+                ps.setString(index++, task.getTaskId());
+                ps.setInt(index, task.getRetryCount());
+            }
+            
+            @Override
+            public int getBatchSize() {
+                return tasks.size();
+            }
+        }));
+    }
+    
+    /**
+     * {@link #updateIfProcessing} for many tasks in a single batch, each
+     * expected at its current retry count.
+     *
+     * @return for each task, whether its row was written
+     */
+    public boolean[] updateAllIfProcessing(List<Task> tasks, String workerId) {
+        return written(jdbcTemplate.batchUpdate(UPDATE_IF_PROCESSING_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Task task = tasks.get(i);
+                int index = setExecutionFields(ps, task);
+                ps.setString(index++, task.getTaskId());
+                ps.setString(index++, workerId);
+                ps.setInt(index, task.getRetryCount());
+            }
+            
+            @Override
+            public int getBatchSize() {
+                return tasks.size();
+            }
+        }));
+    }
+    
+    private int setExecutionFields(PreparedStatement ps, Task task) throws SQLException {
+        ps.setString(1, task.getStatus().name());
+        setTimestamp(ps, 2, task.getStartedAt());
+        setTimestamp(ps, 3, task.getCompletedAt());
+        ps.setString(4, task.getWorkerId());
+        setTimestamp(ps, 5, task.getLeaseExpiresAt());
+        ps.setInt(6, task.getRetryCount());
+        ps.setString(7, task.getErrorMessage());
+        setTimestamp(ps, 8, task.getScheduledAt());
+        setTimestamp(ps, 9, task.getDispatchedAt());
+        return 10;
+    }
+    
+    private static boolean[] written(int[] counts) {
+        boolean[] written = new boolean[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            // The driver may not report per-statement counts; then the write is assumed to have matched
+            written[i] = counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO;
+        }
+        return written;
+    }
+    
+    public void insertOutbox(List<Task> tasks, Function<Task, String> routingKey) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT_OUTBOX_SQL, tasks, tasks.size(), (ps, task) -> {
+            ps.setString(1, task.getTaskId());
+            ps.setString(2, routingKey.apply(task));
+            ps.setTimestamp(3, now);
+        });
+    }
+    
+    /**
+     * Atomically moves up to {@code limit} ready PENDING tasks to PROCESSING
+     * for the given worker, leased until {@code leaseExpiresAt}, and returns them.
+     */
+    public List<Task> claimPending(int limit, String workerId, LocalDateTime leaseExpiresAt) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        return jdbcTemplate.query(CLAIM_SQL, (rs, rowNum) -> mapTask(rs),
+            now, workerId, Timestamp.valueOf(leaseExpiresAt), now, limit);
+    }
+    
+    /**
+     * Extends the lease of every task the worker is running.
+     */
+    public int renewLeases(String workerId, LocalDateTime leaseExpiresAt) {
+        return jdbcTemplate.update(RENEW_LEASES_SQL, Timestamp.valueOf(leaseExpiresAt), workerId);
+    }
+    
+    /**
+     * Takes up to {@code limit} PROCESSING tasks whose lease expired before
+     * {@code now} away from their worker and returns them with their new
+     * status: PENDING if they have attempts left, FAILED otherwise. Tasks
+     * without a lease count as expired {@code ttlMs} after they started.
+     */
+    public List<Task> reclaimExpiredLeases(LocalDateTime now, long ttlMs, int limit) {
+        Timestamp cutoff = Timestamp.valueOf(now);
+        return jdbcTemplate.query(RECLAIM_EXPIRED_SQL, (rs, rowNum) -> mapTask(rs),
+            cutoff, cutoff, Timestamp.valueOf(now.minus(Duration.ofMillis(ttlMs))), limit);
+    }
+    
+    /**
+     * Counts a completed parent against each of the given child tasks and
+     * returns the children that became PENDING, i.e. are ready to enqueue.
+     */
+    public List<Task> releaseWaiting(List<String> childTaskIds) {
+        List<Task> updated = jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(RELEASE_WAITING_SQL);
+            ps.setArray(1, connection.createArrayOf("varchar", childTaskIds.toArray()));
+            return ps;
+        }, (rs, rowNum) -> mapTask(rs));
+        return updated.stream()
+            .filter(task -> task.getStatus() == TaskStatus.PENDING
+                && Integer.valueOf(0).equals(task.getPendingParents()))
+            .toList();
+    }
+    
+    /**
+     * Cancels a task that has not finished yet.
+     *
+     * @return the status it was cancelled from, empty if it had already
+     *         finished
+     */
+    public Optional<TaskStatus> cancel(String taskId, LocalDateTime now) {
+        return jdbcTemplate.queryForList(CANCEL_SQL, String.class, taskId, Timestamp.valueOf(now)).stream()
+            .findFirst()
+            .map(TaskStatus::valueOf);
+    }
+    
+    /**
+     * Cancels the still waiting tasks downstream of {@code taskId} and
+     * returns them.
+     */
+    public List<Task> cancelDownstream(String taskId, LocalDateTime now, String reason) {
+        return jdbcTemplate.query(CANCEL_DOWNSTREAM_SQL, (rs, rowNum) -> mapTask(rs),
+            taskId, Timestamp.valueOf(now), reason);
+    }
+    
+    private Task mapTask(ResultSet rs) throws SQLException {
+        return Task.builder()
+            .id(rs.getLong("id"))
+            .taskId(rs.getString("task_id"))
+            .idempotencyKey(rs.getString("idempotency_key"))
+            .taskType(rs.getString("task_type"))
+            .priority(Priority.valueOf(rs.getString("priority")))
+            .status(TaskStatus.valueOf(rs.getString("status")))
+            .payload(fromJson(rs.getString("payload")))
+            .retryCount(rs.getInt("retry_count"))
+            .maxRetries(rs.getInt("max_retries"))
+            .createdAt(toLocalDateTime(rs.getTimestamp("created_at")))
+            .scheduledAt(toLocalDateTime(rs.getTimestamp("scheduled_at")))
+            .dispatchedAt(toLocalDateTime(rs.getTimestamp("dispatched_at")))
+            .startedAt(toLocalDateTime(rs.getTimestamp("started_at")))
+            .completedAt(toLocalDateTime(rs.getTimestamp("completed_at")))
+            .errorMessage(rs.getString("error_message"))
+            .workerId(rs.getString("worker_id"))
+            .leaseExpiresAt(toLocalDateTime(rs.getTimestamp("lease_expires_at")))
+            .workflowId(rs.getString("workflow_id"))
+            .nodeId(rs.getString("node_id"))
+            .pendingParents(rs.getObject("pending_parents", Integer.class))
+            .build();
+    }
+    
+    /**
+     * Returns up to {@code limit} undispatched scheduled tasks due at or
+     * before {@code horizon}, earliest first, with only taskId and
+     * scheduledAt populated. Pass the last task of a page as {@code after}
+     * to read the next one, or null for the first.
+     */
+    public List<Task> findDueScheduled(LocalDateTime horizon, Task after, int limit) {
+        RowMapper<Task> mapper = (rs, rowNum) -> Task.builder()
+            .taskId(rs.getString("task_id"))
+            .scheduledAt(toLocalDateTime(rs.getTimestamp("scheduled_at")))
+            .build();
+        if (after == null) {
+            return jdbcTemplate.query(DUE_SCHEDULED_SQL + DUE_SCHEDULED_ORDER, mapper, Timestamp.valueOf(horizon), limit);
+        }
+        Timestamp afterScheduledAt = Timestamp.valueOf(after.getScheduledAt());
+        return jdbcTemplate.query(DUE_SCHEDULED_SQL + DUE_SCHEDULED_AFTER + DUE_SCHEDULED_ORDER, mapper,
+            Timestamp.valueOf(horizon), afterScheduledAt, afterScheduledAt, after.getTaskId(), limit);
+    }
+    
+    /**
+     * Marks the given tasks dispatched and returns the ones this call marked,
+     * with taskId and priority populated. Tasks already dispatched or no
+     * longer PENDING are skipped, so concurrent callers never both win.
+     */
+    public List<Task> markDispatched(List<String> taskIds) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(MARK_DISPATCHED_SQL);
+            ps.setTimestamp(1, now);
+            ps.setArray(2, connection.createArrayOf("varchar", taskIds.toArray()));
+            return ps;
+        }, (rs, rowNum) -> Task.builder()
+            .taskId(rs.getString("task_id"))
+            .priority(Priority.valueOf(rs.getString("priority")))
+            .build());
+    }
+    
+    private void setTimestamp(PreparedStatement ps, int index, LocalDateTime value) throws SQLException {
+        if (value != null) {
+            ps.setTimestamp(index, Timestamp.valueOf(value));
+        } else {
+            ps.setNull(index, Types.TIMESTAMP);
+        }
+    }
+    
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+    
+    private Map<String, Object> fromJson(String payload) {
+        try {
+            return objectMapper.readValue(payload, new TypeReference<>() {});
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored payload is not valid JSON", e);
+        }
+    }
+    
+    private String toJson(Task task) {
+        try {
+            return objectMapper.writeValueAsString(task.getPayload());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Payload is not serializable for task " + task.getTaskId(), e);
+        }
+    }
+}
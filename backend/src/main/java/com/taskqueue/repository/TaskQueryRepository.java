@@ -0,0 +1,94 @@
+package com.taskqueue.repository;
+
+import com.taskqueue.dto.TaskCursor;
+import com.taskqueue.dto.TaskFilter;
+import com.taskqueue.dto.TaskSummary;
+import com.taskqueue.model.Priority;
+import com.taskqueue.model.TaskStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-side task listing. Pages are addressed by a (created_at, id) keyset
+ * rather than an offset, so every page is an index range scan on one of the
+ * (filter, created_at, id) indexes declared on {@link com.taskqueue.model.Task},
+ * no matter how deep the client has paged.
+ */
+@Repository
+@RequiredArgsConstructor
+public class TaskQueryRepository {
+    
+    private static final String SUMMARY_COLUMNS =
+        "id, task_id, task_type, priority, status, retry_count, worker_id, created_at, started_at, completed_at";
+    
+    private static final RowMapper<TaskSummary> SUMMARY_MAPPER = (rs, rowNum) -> TaskSummary.builder()
+        .id(rs.getLong("id"))
+        .taskId(rs.getString("task_id"))
+        .taskType(rs.getString("task_type"))
+        .priority(Priority.valueOf(rs.getString("priority")))
+        .status(TaskStatus.valueOf(rs.getString("status")))
+        .retryCount(rs.getInt("retry_count"))
+        .workerId(rs.getString("worker_id"))
+        .createdAt(toLocalDateTime(rs.getTimestamp("created_at")))
+        .startedAt(toLocalDateTime(rs.getTimestamp("started_at")))
+        .completedAt(toLocalDateTime(rs.getTimestamp("completed_at")))
+        .build();
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    /**
+     * Newest-first page of tasks strictly after {@code after} (null for the first page).
+     */
+    public List<TaskSummary> findPage(TaskFilter filter, TaskCursor after, int limit) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT ").append(SUMMARY_COLUMNS).append(" FROM tasks");
+        appendWhere(sql, args, filter, after);
+        sql.append(" ORDER BY created_at DESC, id DESC LIMIT ?");
+        args.add(limit);
+        return jdbcTemplate.query(sql.toString(), SUMMARY_MAPPER, args.toArray());
+    }
+    
+    public long count(TaskFilter filter) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM tasks");
+        appendWhere(sql, args, filter, null);
+        Long count = jdbcTemplate.queryForObject(sql.toString(), Long.class, args.toArray());
+        return count != null ? count : 0;
+    }
+    
+    private void appendWhere(StringBuilder sql, List<Object> args, TaskFilter filter, TaskCursor after) {
+        List<String> conditions = new ArrayList<>();
+        if (filter.getStatus() != null) {
+            conditions.add("status = ?");
+            args.add(filter.getStatus().name());
+        }
+        if (filter.getTaskType() != null) {
+            conditions.add("task_type = ?");
+            args.add(filter.getTaskType());
+        }
+        if (filter.getPriority() != null) {
+            conditions.add("priority = ?");
+            args.add(filter.getPriority().name());
+        }
+        if (after != null) {
+            // Row-value comparison lets Postgres use the composite index as a range bound
+            conditions.add("(created_at, id) < (?, ?)");
+            args.add(Timestamp.valueOf(after.getCreatedAt()));
+            args.add(after.getId());
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+    }
+    
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
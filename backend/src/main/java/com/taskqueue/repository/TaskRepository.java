@@ -9,6 +9,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,6 +20,14 @@ public interface TaskRepository extends JpaRepository<Task, Long> {
     
     Optional<Task> findByTaskId(String taskId);
     
+    List<Task> findByTaskIdIn(Collection<String> taskIds);
+    
+    Optional<Task> findByIdempotencyKey(String idempotencyKey);
+    
+    List<Task> findByIdempotencyKeyIn(Collection<String> idempotencyKeys);
+    
+    List<Task> findByWorkflowId(String workflowId);
+    
     List<Task> findByStatus(TaskStatus status);
     
     List<Task> findByPriority(Priority priority);
@@ -28,6 +37,10 @@ public interface TaskRepository extends JpaRepository<Task, Long> {
     @Query("SELECT COUNT(t) FROM Task t WHERE t.status = :status")
     Long countByStatus(TaskStatus status);
     
+    // One grouped scan to (re)seed the incremental status counters
+    @Query("SELECT t.taskType, t.status, COUNT(t) FROM Task t GROUP BY t.taskType, t.status")
+    List<Object[]> countByTaskTypeAndStatus();
+    
     @Query("SELECT AVG(TIMESTAMPDIFF(SECOND, t.startedAt, t.completedAt)) FROM Task t WHERE t.status = 'COMPLETED'")
     Double getAverageProcessingTime();
     
@@ -0,0 +1,93 @@
+package com.taskqueue.repository;
+
+import com.taskqueue.model.WorkflowEdge;
+import com.taskqueue.model.WorkflowStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * JDBC access for workflow edges and the per-workflow counters, which
+ * workers update with single atomic statements rather than read-modify-write.
+ */
+@Repository
+@RequiredArgsConstructor
+public class WorkflowBatchRepository {
+    
+    private static final String INSERT_EDGE_SQL =
+        "INSERT INTO workflow_edges (workflow_id, parent_task_id, child_task_id, released) VALUES (?, ?, ?, false)";
+    
+    // Each edge is released once, so a child loses each parent at most once
+    private static final String RELEASE_EDGES_SQL =
+        "UPDATE workflow_edges SET released = true WHERE parent_task_id = ? AND NOT released " +
+        "RETURNING child_task_id";
+    
+    private static final String FIND_EDGES_SQL =
+        "SELECT parent_task_id, child_task_id, released FROM workflow_edges WHERE workflow_id = ?";
+    
+    // SET expressions see the old row, so completed_tasks + 1 is the new count
+    private static final String RECORD_COMPLETED_SQL =
+        "UPDATE workflows SET completed_tasks = completed_tasks + 1, " +
+        "status = CASE WHEN status = 'RUNNING' AND completed_tasks + 1 >= total_tasks THEN 'COMPLETED' ELSE status END, " +
+        "completed_at = CASE WHEN status = 'RUNNING' AND completed_tasks + 1 >= total_tasks THEN ? ELSE completed_at END " +
+        "WHERE workflow_id = ? RETURNING status";
+    
+    private static final String RECORD_FAILED_SQL =
+        "UPDATE workflows SET failed_tasks = failed_tasks + ?, cancelled_tasks = cancelled_tasks + ?, " +
+        "status = CASE WHEN status = 'RUNNING' THEN 'FAILED' ELSE status END, " +
+        "completed_at = COALESCE(completed_at, ?) WHERE workflow_id = ? RETURNING status";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public void insertEdges(List<WorkflowEdge> edges) {
+        jdbcTemplate.batchUpdate(INSERT_EDGE_SQL, edges, edges.size(), (ps, edge) -> {
+            ps.setString(1, edge.getWorkflowId());
+            ps.setString(2, edge.getParentTaskId());
+            ps.setString(3, edge.getChildTaskId());
+        });
+    }
+    
+    /**
+     * Marks the outgoing edges of a completed task released and returns the
+     * child task ids. Empty if they were already released.
+     */
+    public List<String> releaseEdges(String parentTaskId) {
+        return jdbcTemplate.queryForList(RELEASE_EDGES_SQL, String.class, parentTaskId);
+    }
+    
+    public List<WorkflowEdge> findEdges(String workflowId) {
+        return jdbcTemplate.query(FIND_EDGES_SQL, (rs, rowNum) -> WorkflowEdge.builder()
+            .workflowId(workflowId)
+            .parentTaskId(rs.getString("parent_task_id"))
+            .childTaskId(rs.getString("child_task_id"))
+            .released(rs.getBoolean("released"))
+            .build(), workflowId);
+    }
+    
+    /**
+     * Counts a completed task and returns the workflow's status afterwards:
+     * COMPLETED once every task has completed. Must run in the transaction
+     * whose conditional update moved the task to COMPLETED, so each task is
+     * counted once.
+     */
+    public WorkflowStatus recordCompleted(String workflowId, LocalDateTime now) {
+        return jdbcTemplate.queryForObject(RECORD_COMPLETED_SQL,
+            (rs, rowNum) -> WorkflowStatus.valueOf(rs.getString("status")),
+            Timestamp.valueOf(now), workflowId);
+    }
+    
+    /**
+     * Counts failed and cancelled tasks and marks a running workflow FAILED.
+     * Like {@link #recordCompleted}, only in the transaction that moved the
+     * tasks there.
+     */
+    public WorkflowStatus recordFailed(String workflowId, int failed, int cancelled, LocalDateTime now) {
+        return jdbcTemplate.queryForObject(RECORD_FAILED_SQL,
+            (rs, rowNum) -> WorkflowStatus.valueOf(rs.getString("status")),
+            failed, cancelled, Timestamp.valueOf(now), workflowId);
+    }
+}
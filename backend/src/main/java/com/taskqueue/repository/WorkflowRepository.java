@@ -0,0 +1,13 @@
+package com.taskqueue.repository;
+
+import com.taskqueue.model.Workflow;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface WorkflowRepository extends JpaRepository<Workflow, Long> {
+    
+    Optional<Workflow> findByWorkflowId(String workflowId);
+}
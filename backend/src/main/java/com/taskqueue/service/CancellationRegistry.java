@@ -0,0 +1,109 @@
+package com.taskqueue.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.taskqueue.config.TaskQueueProperties;
+import com.taskqueue.executor.CancellationToken;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks cancelled task ids on every instance, so workers can drop messages
+ * for cancelled tasks with an in-memory lookup instead of a database read,
+ * and cancels the token of a cancelled task that is already running here.
+ * Cancellations are broadcast over Redis pub/sub and also kept in a sorted
+ * set (scored by expiry) that instances load on startup.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CancellationRegistry {
+    
+    private static final String CANCELLED_CHANNEL = "task:cancelled";
+    private static final String CANCELLED_KEY = "tasks:cancelled";
+    
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final TaskQueueProperties properties;
+    
+    private final Map<String, CancellationToken> running = new ConcurrentHashMap<>();
+    private Cache<String, Boolean> cancelled;
+    
+    @PostConstruct
+    public void init() {
+        TaskQueueProperties.Cancellation config = properties.getCancellation();
+        cancelled = Caffeine.newBuilder()
+            .maximumSize(config.getMaxSize())
+            .expireAfterWrite(Duration.ofMillis(config.getTtl()))
+            .build();
+        
+        listenerContainer.addMessageListener((message, pattern) ->
+            markCancelled(new String(message.getBody(), StandardCharsets.UTF_8)),
+            new ChannelTopic(CANCELLED_CHANNEL));
+        
+        try {
+            Set<String> recent = stringRedisTemplate.opsForZSet()
+                .rangeByScore(CANCELLED_KEY, System.currentTimeMillis(), Double.POSITIVE_INFINITY);
+            if (recent != null) {
+                recent.forEach(taskId -> cancelled.put(taskId, Boolean.TRUE));
+                log.info("Loaded {} recently cancelled tasks", recent.size());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not load cancelled tasks: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Records the cancellation and tells every instance about it, including
+     * the one running the task, if any.
+     */
+    public void cancel(String taskId) {
+        markCancelled(taskId);
+        long now = System.currentTimeMillis();
+        stringRedisTemplate.opsForZSet().add(CANCELLED_KEY, taskId, now + properties.getCancellation().getTtl());
+        stringRedisTemplate.opsForZSet().removeRangeByScore(CANCELLED_KEY, Double.NEGATIVE_INFINITY, now);
+        stringRedisTemplate.convertAndSend(CANCELLED_CHANNEL, taskId);
+    }
+    
+    public boolean isCancelled(String taskId) {
+        return cancelled.getIfPresent(taskId) != null;
+    }
+    
+    /**
+     * Returns the token for a task about to run here. It is already
+     * cancelled if a cancellation arrived since the last check.
+     */
+    public CancellationToken register(String taskId) {
+        CancellationToken token = new CancellationToken();
+        running.put(taskId, token);
+        // Checked after registering, so a concurrent markCancelled either sees the token or is seen here
+        if (isCancelled(taskId)) {
+            token.cancel();
+        }
+        return token;
+    }
+    
+    public void unregister(String taskId, CancellationToken token) {
+        running.remove(taskId, token);
+    }
+    
+    private void markCancelled(String taskId) {
+        cancelled.put(taskId, Boolean.TRUE);
+        CancellationToken token = running.get(taskId);
+        if (token != null) {
+            log.info("Cancelling running task {}", taskId);
+            token.cancel();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.taskqueue.service;
+
+import com.taskqueue.config.TaskQueueProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Per task type bulkheads and token-bucket rate limits, checked before a
+ * task is started. A task that is not admitted is deferred by the worker
+ * rather than failed, so hitting a limit neither burns a retry nor holds a
+ * consumer thread. Types without an entry in executor-limits always pass.
+ * A task the rate limit defers reserves a future token, so deferred tasks
+ * come back spread at the refill rate instead of all at once.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExecutionLimiter {
+    
+    private static final String BUCKET_KEY_PREFIX = "ratelimit:";
+    private static final String RESERVATIONS_KEY_SUFFIX = ":reservations";
+    // How long past its time a reservation waits for a task that is late back from the queue
+    private static final long RESERVATION_GRACE_MS = 60000;
+    
+    private static final RedisScript<Long> TOKEN_BUCKET_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/token_bucket.lua"), Long.class);
+    
+    private final TaskQueueProperties properties;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final MeterRegistry meterRegistry;
+    
+    private final Map<String, Semaphore> bulkheads = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> localBuckets = new ConcurrentHashMap<>();
+    
+    /**
+     * Takes a bulkhead permit and a rate token for the task type, or uses
+     * the token the task reserved when it was deferred. An admitted caller
+     * must call {@link Admission#release()} once the task has finished.
+     */
+    public Admission tryAdmit(String taskType, String taskId) {
+        TaskQueueProperties.ExecutorLimit limit = properties.getExecutorLimits().get(taskType);
+        if (limit == null) {
+            return Admission.UNLIMITED;
+        }
+        
+        Semaphore bulkhead = limit.getMaxConcurrent() > 0
+            ? bulkheads.computeIfAbsent(taskType, type -> new Semaphore(limit.getMaxConcurrent()))
+            : null;
+        if (bulkhead != null && !bulkhead.tryAcquire()) {
+            recordDeferred(taskType, "bulkhead");
+            return Admission.deferred(limit.getBulkheadRetryDelay());
+        }
+        
+        long waitMs = limit.getRatePerSecond() > 0 ? takeToken(taskType, taskId, limit) : 0;
+        if (waitMs > 0) {
+            if (bulkhead != null) {
+                bulkhead.release();
+            }
+            recordDeferred(taskType, "rate");
+            return Admission.deferred(waitMs);
+        }
+        
+        return bulkhead != null ? Admission.admitted(bulkhead::release) : Admission.UNLIMITED;
+    }
+    
+    private long takeToken(String taskType, String taskId, TaskQueueProperties.ExecutorLimit limit) {
+        double rate = limit.getRatePerSecond();
+        int capacity = limit.getBurst() > 0 ? limit.getBurst() : (int) Math.max(1, Math.ceil(rate));
+        if (limit.isDistributed()) {
+            try {
+                String bucketKey = BUCKET_KEY_PREFIX + taskType;
+                Long waitMs = stringRedisTemplate.execute(TOKEN_BUCKET_SCRIPT,
+                    List.of(bucketKey, bucketKey + RESERVATIONS_KEY_SUFFIX),
+                    String.valueOf(rate), String.valueOf(capacity), taskId, String.valueOf(RESERVATION_GRACE_MS));
+                return waitMs != null ? waitMs : 0;
+            } catch (RuntimeException e) {
+                // Keep limiting on this instance rather than letting everything through
+                log.warn("Shared rate limit for {} unavailable, using local bucket: {}", taskType, e.getMessage());
+            }
+        }
+        return localBuckets.computeIfAbsent(taskType, type -> new TokenBucket(rate, capacity)).take(taskId);
+    }
+    
+    private void recordDeferred(String taskType, String reason) {
+        meterRegistry.counter("taskqueue.tasks.deferred", "type", taskType, "reason", reason).increment();
+    }
+    
+    @Value
+    public static class Admission {
+        static final Admission UNLIMITED = new Admission(true, 0, () -> { });
+        
+        boolean admitted;
+        // How long to defer a task that was not admitted
+        long retryAfterMs;
+        Runnable releaser;
+        
+        static Admission admitted(Runnable releaser) {
+            return new Admission(true, 0, releaser);
+        }
+        
+        static Admission deferred(long retryAfterMs) {
+            return new Admission(false, retryAfterMs, () -> { });
+        }
+        
+        public void release() {
+            releaser.run();
+        }
+    }
+    
+    // Same algorithm as token_bucket.lua, for buckets local to this instance
+    private static final class TokenBucket {
+        private final double ratePerMs;
+        private final double capacity;
+        private double tokens;
+        private long refilledAt = System.currentTimeMillis();
+        // Task id -> time (ms) from which its reserved token admits it
+        private final Map<String, Long> reservations = new HashMap<>();
+        
+        TokenBucket(double ratePerSecond, double capacity) {
+            this.ratePerMs = ratePerSecond / 1000;
+            this.capacity = capacity;
+            this.tokens = capacity;
+        }
+        
+        // Returns 0 if the task was admitted, otherwise the ms to defer it by
+        synchronized long take(String taskId) {
+            long now = System.currentTimeMillis();
+            Long reservedAt = reservations.get(taskId);
+            if (reservedAt != null) {
+                if (reservedAt > now) {
+                    return reservedAt - now;
+                }
+                reservations.remove(taskId);
+                return 0;
+            }
+            reservations.values().removeIf(at -> at < now - RESERVATION_GRACE_MS);
+            
+            tokens = Math.min(capacity, tokens + (now - refilledAt) * ratePerMs) - 1;
+            refilledAt = now;
+            if (tokens >= 0) {
+                return 0;
+            }
+            // Reserve the next token: the deficit refills in -tokens / rate
+            long waitMs = (long) Math.ceil(-tokens / ratePerMs);
+            reservations.put(taskId, now + waitMs);
+            return waitMs;
+        }
+    }
+}
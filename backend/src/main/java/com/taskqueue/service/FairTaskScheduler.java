@@ -0,0 +1,203 @@
+package com.taskqueue.service;
+
+import com.taskqueue.config.TaskQueueProperties;
+import com.taskqueue.model.Priority;
+import com.taskqueue.model.Task;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Local dispatch stage for the "fair" worker mode. Consumers of all three
+ * priority queues put tasks into one bounded lane per priority; a single
+ * dispatcher thread picks the next task by deficit round-robin over the
+ * configured weights and runs it on a virtual thread once an execution
+ * slot is free. A lane whose head has waited in it longer than the aging
+ * threshold is topped up like the heaviest lane until it catches up, so
+ * LOW cannot starve behind a steady stream of HIGH, while the boost stays
+ * bounded by the round-robin and cannot hand the dispatcher to one lane.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FairTaskScheduler {
+    
+    private final TaskQueueProperties properties;
+    private final MeterRegistry meterRegistry;
+    
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Map<Priority, Lane> lanes = new EnumMap<>(Priority.class);
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Priority[] order = Priority.values();
+    private int cursor;
+    // Top-up of an aged lane
+    private double boostedWeight;
+    private Semaphore slots;
+    private volatile Thread dispatcher;
+    
+    /**
+     * Queues a task for dispatch, blocking while its lane is full so the
+     * consumer stops acking and the broker stops delivering. {@code work}
+     * runs the task and completes once its outcome is recorded; {@code onDone}
+     * runs after that (typically the message ack).
+     */
+    public void submit(Task task, Supplier<CompletionStage<?>> work, Runnable onDone) throws InterruptedException {
+        ensureStarted();
+        int capacity = properties.getWorker().getFair().getPrefetch();
+        Lane lane = lanes.get(task.getPriority());
+        lock.lockInterruptibly();
+        try {
+            while (lane.queue.size() >= capacity) {
+                notFull.await();
+            }
+            lane.queue.add(new Pending(task, work, onDone, readyAt(task), System.currentTimeMillis()));
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    // Started on first use so the other worker modes don't carry an idle dispatcher
+    private synchronized void ensureStarted() {
+        if (dispatcher != null) {
+            return;
+        }
+        TaskQueueProperties.Fair fair = properties.getWorker().getFair();
+        for (Priority priority : order) {
+            // Weights must stay positive or a busy lane would never be topped up to a full credit
+            double weight = Math.max(0.01, fair.getWeights().getOrDefault(priority, 1.0));
+            lanes.put(priority, new Lane(weight, Timer.builder("taskqueue.task.wait")
+                .description("Time from a task becoming ready to its dispatch")
+                .tag("priority", priority.name())
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry)));
+            boostedWeight = Math.max(boostedWeight, weight);
+        }
+        slots = new Semaphore(fair.getConcurrency());
+        dispatcher = Thread.ofPlatform().name("fair-dispatcher").daemon().start(this::dispatchLoop);
+        log.info("Fair scheduler started with weights {} and {} slots", fair.getWeights(), fair.getConcurrency());
+    }
+    
+    private void dispatchLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                slots.acquire();
+                Pending next = take();
+                executor.execute(() -> run(next));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    private void run(Pending pending) {
+        Runnable release = () -> {
+            slots.release();
+            pending.onDone.run();
+        };
+        try {
+            pending.work.get().whenComplete((result, error) -> release.run());
+        } catch (RuntimeException e) {
+            log.error("Failed to start task {}: {}", pending.task.getTaskId(), e.getMessage(), e);
+            release.run();
+        }
+    }
+    
+    private Pending take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            Pending next;
+            while ((next = poll()) == null) {
+                notEmpty.await();
+            }
+            notFull.signalAll();
+            lanes.get(next.task.getPriority()).waitTimer
+                .record(Math.max(0, System.currentTimeMillis() - next.readyAtMillis), TimeUnit.MILLISECONDS);
+            return next;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Deficit round-robin with a unit cost per task: each visit tops a lane
+     * up by its weight and it is served until the credit runs out. An empty
+     * lane forfeits its credit, so idle priorities cannot bank a burst.
+     * Caller holds the lock.
+     */
+    private Pending poll() {
+        if (lanes.values().stream().allMatch(lane -> lane.queue.isEmpty())) {
+            return null;
+        }
+        // Aging counts from lane entry, so a task that sat in the broker or a retry backoff is not boosted for it
+        long agedBefore = System.currentTimeMillis() - properties.getWorker().getFair().getAgingThreshold();
+        // Terminates: some lane is non-empty and gains a positive weight every round
+        while (true) {
+            Lane lane = lanes.get(order[cursor]);
+            if (lane.queue.isEmpty()) {
+                lane.credit = 0;
+            } else if (lane.credit >= 1) {
+                lane.credit -= 1;
+                return lane.queue.poll();
+            }
+            cursor = (cursor + 1) % order.length;
+            Lane nextLane = lanes.get(order[cursor]);
+            if (!nextLane.queue.isEmpty()) {
+                boolean aged = nextLane.queue.peek().enqueuedAtMillis <= agedBefore;
+                nextLane.credit += aged ? boostedWeight : nextLane.weight;
+            }
+        }
+    }
+    
+    // Retries become ready when their backoff expires, not when first submitted
+    private static long readyAt(Task task) {
+        LocalDateTime readyAt = task.getScheduledAt() != null ? task.getScheduledAt() : task.getCreatedAt();
+        return readyAt != null
+            ? readyAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+            : System.currentTimeMillis();
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+        }
+        executor.close();
+    }
+    
+    private static final class Lane {
+        final double weight;
+        final Timer waitTimer;
+        final ArrayDeque<Pending> queue = new ArrayDeque<>();
+        double credit;
+        
+        Lane(double weight, Timer waitTimer) {
+            this.weight = weight;
+            this.waitTimer = waitTimer;
+        }
+    }
+    
+    private record Pending(Task task, Supplier<CompletionStage<?>> work, Runnable onDone,
+                           long readyAtMillis, long enqueuedAtMillis) {
+    }
+}
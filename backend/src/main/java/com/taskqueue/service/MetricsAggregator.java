@@ -0,0 +1,244 @@
+package com.taskqueue.service;
+
+import com.taskqueue.config.TaskQueueProperties;
+import com.taskqueue.dto.LatencyPercentiles;
+import com.taskqueue.model.Priority;
+import com.taskqueue.model.Task;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Collects task counters and latencies in memory so worker hot paths never
+ * wait on Redis. Counters are striped {@link LongAdder}s keyed by task type,
+ * priority and outcome; latencies go into one HdrHistogram {@link Recorder}
+ * per task type. A background flush merges the deltas into the Redis keys
+ * read by {@link MetricsService} and publishes them to Micrometer.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MetricsAggregator {
+    
+    public enum Outcome { SUBMITTED, STARTED, COMPLETED, FAILED, RETRIED }
+    
+    private final StringRedisTemplate stringRedisTemplate;
+    private final MeterRegistry meterRegistry;
+    private final TaskQueueProperties properties;
+    
+    private final Map<CounterKey, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, TypeLatency> latencies = new ConcurrentHashMap<>();
+    // Counter deltas already published to Micrometer but not yet written to Redis; flush thread only
+    private final Map<CounterKey, Long> unflushed = new HashMap<>();
+    
+    public void recordSubmitted(Task task) {
+        increment(task, Outcome.SUBMITTED);
+    }
+    
+    public void recordStarted(Task task) {
+        increment(task, Outcome.STARTED);
+    }
+    
+    public void recordCompleted(Task task, long durationMs) {
+        increment(task, Outcome.COMPLETED);
+        latencyFor(task.getTaskType()).record(durationMs);
+    }
+    
+    public void recordFailed(Task task) {
+        increment(task, Outcome.FAILED);
+    }
+    
+    public void recordRetried(Task task) {
+        increment(task, Outcome.RETRIED);
+    }
+    
+    /**
+     * Cluster-wide count of tasks picked up from the given priority queue.
+     */
+    public static String startedKey(Priority priority) {
+        return "metrics:tasks_started_" + priority.name().toLowerCase();
+    }
+    
+    /**
+     * Latency percentiles per task type as of the last flush.
+     */
+    public Map<String, LatencyPercentiles> getLatencyPercentiles() {
+        Map<String, LatencyPercentiles> result = new HashMap<>();
+        latencies.forEach((taskType, latency) -> {
+            if (latency.snapshot != null) {
+                result.put(taskType, latency.snapshot);
+            }
+        });
+        return result;
+    }
+    
+    @Scheduled(fixedDelayString = "${task-queue.metrics.flush-interval:500}")
+    public void flush() {
+        // Micrometer sees each delta once, when it is drained; only the Redis write is retried
+        counters.forEach((key, adder) -> {
+            long delta = adder.sumThenReset();
+            if (delta != 0) {
+                unflushed.merge(key, delta, Long::sum);
+                meterRegistry.counter("taskqueue.tasks",
+                        "type", key.taskType(), "priority", key.priority(), "outcome", key.outcome().name().toLowerCase())
+                    .increment(delta);
+            }
+        });
+        
+        Map<String, long[]> latencyDeltas = new HashMap<>();
+        latencies.forEach((taskType, latency) -> {
+            long[] delta = latency.drain();
+            if (delta[1] != 0) {
+                latencyDeltas.put(taskType, delta);
+            }
+        });
+        
+        if (unflushed.isEmpty() && latencyDeltas.isEmpty()) {
+            return;
+        }
+        
+        try {
+            writeToRedis(unflushed, latencyDeltas);
+            unflushed.clear();
+        } catch (DataAccessException e) {
+            // Keep the deltas so they are retried on the next flush
+            log.warn("Metrics flush to Redis failed: {}", e.getMessage());
+            latencyDeltas.forEach((taskType, delta) -> latencies.get(taskType).restore(delta));
+        }
+    }
+    
+    private void writeToRedis(Map<CounterKey, Long> counterDeltas, Map<String, long[]> latencyDeltas) {
+        stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> redisOperations) {
+                RedisOperations<String, String> operations = (RedisOperations<String, String>) redisOperations;
+                counterDeltas.forEach((key, delta) -> {
+                    for (String redisKey : key.redisKeys()) {
+                        operations.opsForValue().increment(redisKey, delta);
+                    }
+                    operations.opsForHash().increment("metrics:tasks_by_type:" + key.taskType(),
+                        key.outcome().name().toLowerCase(), delta);
+                });
+                latencyDeltas.forEach((taskType, delta) -> {
+                    operations.opsForHash().increment("metrics:latency", "sum_ms", delta[0]);
+                    operations.opsForHash().increment("metrics:latency", "count", delta[1]);
+                    operations.opsForHash().increment("metrics:latency:" + taskType, "sum_ms", delta[0]);
+                    operations.opsForHash().increment("metrics:latency:" + taskType, "count", delta[1]);
+                });
+                return null;
+            }
+        });
+    }
+    
+    private void increment(Task task, Outcome outcome) {
+        CounterKey key = new CounterKey(task.getTaskType(), task.getPriority().name().toLowerCase(), outcome);
+        counters.computeIfAbsent(key, k -> new LongAdder()).increment();
+    }
+    
+    private TypeLatency latencyFor(String taskType) {
+        return latencies.computeIfAbsent(taskType, this::registerLatency);
+    }
+    
+    private TypeLatency registerLatency(String taskType) {
+        TaskQueueProperties.Metrics metrics = properties.getMetrics();
+        TypeLatency latency = new TypeLatency(metrics.getHighestTrackableLatency(), metrics.getSignificantDigits());
+        registerGauge(taskType, "0.5", latency, LatencyPercentiles::getP50);
+        registerGauge(taskType, "0.99", latency, LatencyPercentiles::getP99);
+        registerGauge(taskType, "0.999", latency, LatencyPercentiles::getP999);
+        registerGauge(taskType, "1.0", latency, LatencyPercentiles::getMax);
+        return latency;
+    }
+    
+    private void registerGauge(String taskType, String quantile, TypeLatency latency,
+                               ToDoubleFunction<LatencyPercentiles> value) {
+        Gauge.builder("taskqueue.task.latency", latency,
+                l -> l.snapshot != null ? value.applyAsDouble(l.snapshot) : 0)
+            .tag("type", taskType)
+            .tag("quantile", quantile)
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+    }
+    
+    private record CounterKey(String taskType, String priority, Outcome outcome) {
+        
+        // Keys kept compatible with what MetricsService already reads
+        String[] redisKeys() {
+            return switch (outcome) {
+                case SUBMITTED -> new String[] {"metrics:tasks_submitted", "metrics:tasks_" + priority};
+                case STARTED -> new String[] {"metrics:tasks_started_" + priority};
+                case COMPLETED -> new String[] {"metrics:tasks_completed"};
+                case FAILED -> new String[] {"metrics:tasks_failed", "metrics:tasks_failed_" + taskType};
+                case RETRIED -> new String[] {"metrics:tasks_retried"};
+            };
+        }
+    }
+    
+    /**
+     * Latency state for one task type. Writers only touch the recorder and
+     * adders; the cumulative histogram is owned by the flush thread.
+     */
+    private static class TypeLatency {
+        
+        private final Recorder recorder;
+        private final Histogram cumulative;
+        private final long highestTrackable;
+        private final LongAdder sum = new LongAdder();
+        private final LongAdder count = new LongAdder();
+        private Histogram interval;
+        private volatile LatencyPercentiles snapshot;
+        
+        TypeLatency(long highestTrackable, int significantDigits) {
+            this.recorder = new Recorder(highestTrackable, significantDigits);
+            this.cumulative = new Histogram(highestTrackable, significantDigits);
+            this.highestTrackable = highestTrackable;
+        }
+        
+        void record(long durationMs) {
+            recorder.recordValue(Math.max(0, Math.min(durationMs, highestTrackable)));
+            sum.add(durationMs);
+            count.increment();
+        }
+        
+        /**
+         * Folds the interval histogram into the cumulative one, refreshes the
+         * snapshot and returns the {sum, count} delta since the last drain.
+         */
+        long[] drain() {
+            interval = recorder.getIntervalHistogram(interval);
+            if (interval.getTotalCount() > 0) {
+                cumulative.add(interval);
+                snapshot = LatencyPercentiles.builder()
+                    .count(cumulative.getTotalCount())
+                    .mean(cumulative.getMean())
+                    .p50(cumulative.getValueAtPercentile(50))
+                    .p99(cumulative.getValueAtPercentile(99))
+                    .p999(cumulative.getValueAtPercentile(99.9))
+                    .max(cumulative.getMaxValue())
+                    .build();
+            }
+            return new long[] {sum.sumThenReset(), count.sumThenReset()};
+        }
+        
+        void restore(long[] delta) {
+            sum.add(delta[0]);
+            count.add(delta[1]);
+        }
+    }
+}
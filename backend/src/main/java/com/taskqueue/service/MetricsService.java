@@ -1,46 +1,97 @@
 package com.taskqueue.service;
 
+import com.taskqueue.config.TaskQueueProperties;
 import com.taskqueue.dto.MetricsResponse;
+import com.taskqueue.dto.QueueDepth;
 import com.taskqueue.model.TaskStatus;
 import com.taskqueue.repository.TaskRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class MetricsService {
     
+    private static final RedisScript<Long> SEED_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/status_counts_seed.lua"), Long.class);
+    
     private final TaskRepository taskRepository;
     private final RedisTemplate<String, Object> redisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final MetricsAggregator metricsAggregator;
+    private final TaskExecutorService executorService;
+    private final TaskQueueProperties properties;
+    private final QueueDepthProvider queueDepthProvider;
+    
+    private final Object cacheLock = new Object();
+    private volatile CachedResponse cached;
     
+    /**
+     * Returns the dashboard metrics. Responses are cached for a short TTL
+     * and concurrent callers share a single computation.
+     */
     public MetricsResponse getMetrics() {
-        // Get metrics from Redis (fast) and fallback to DB (accurate)
-        Long totalTasks = getMetricValue("metrics:tasks_submitted", 
-                                         taskRepository.count());
-        Long completedTasks = getMetricValue("metrics:tasks_completed", 
-                                              taskRepository.countByStatus(TaskStatus.COMPLETED));
-        Long failedTasks = getMetricValue("metrics:tasks_failed", 
-                                          taskRepository.countByStatus(TaskStatus.FAILED));
-        Long pendingTasks = taskRepository.countByStatus(TaskStatus.PENDING);
-        Long processingTasks = taskRepository.countByStatus(TaskStatus.PROCESSING);
+        CachedResponse current = cached;
+        if (current != null && current.isFresh()) {
+            return current.response();
+        }
+        synchronized (cacheLock) {
+            current = cached;
+            if (current == null || !current.isFresh()) {
+                long ttlNanos = properties.getMetrics().getResponseCacheTtl() * 1_000_000L;
+                current = new CachedResponse(computeMetrics(), System.nanoTime() + ttlNanos);
+                cached = current;
+            }
+            return current.response();
+        }
+    }
+    
+    private MetricsResponse computeMetrics() {
+        // Status counts are maintained incrementally by the transition script
+        // and seeded from the DB by seedStatusCounts
+        Map<TaskStatus, Long> statusCounts = toStatusCounts(
+            stringRedisTemplate.opsForHash().entries(TaskTransitionScript.STATUS_COUNTS_KEY));
         
-        Double avgProcessingTime = (Double) redisTemplate.opsForValue()
-            .get("metrics:avg_processing_time");
+        Long totalTasks = getMetricValue("metrics:tasks_submitted",
+                                         () -> statusCounts.values().stream().mapToLong(Long::longValue).sum());
+        Long completedTasks = getMetricValue("metrics:tasks_completed",
+                                             () -> statusCounts.get(TaskStatus.COMPLETED));
+        Long failedTasks = getMetricValue("metrics:tasks_failed",
+                                          () -> statusCounts.get(TaskStatus.FAILED));
+        Long pendingTasks = statusCounts.get(TaskStatus.PENDING);
+        Long processingTasks = statusCounts.get(TaskStatus.PROCESSING);
+        
+        Double avgProcessingTime = getAverageLatency();
         if (avgProcessingTime == null) {
             avgProcessingTime = taskRepository.getAverageProcessingTime();
             if (avgProcessingTime == null) avgProcessingTime = 0.0;
         }
         
+        Map<String, QueueDepth> queueDepths = new HashMap<>();
         Map<String, Integer> queueSizes = new HashMap<>();
-        queueSizes.put("high", getQueueSize("high"));
-        queueSizes.put("medium", getQueueSize("medium"));
-        queueSizes.put("low", getQueueSize("low"));
+        queueDepthProvider.getDepths().forEach((priority, depth) -> {
+            String key = priority.name().toLowerCase();
+            queueDepths.put(key, depth);
+            queueSizes.put(key, depth.getMessageCount().intValue());
+        });
         
         double successRate = totalTasks > 0 
             ? (completedTasks * 100.0) / totalTasks 
@@ -54,18 +105,111 @@ public class MetricsService {
             .processingTasks(processingTasks)
             .avgProcessingTime(avgProcessingTime)
             .queueSizes(queueSizes)
+            .queueDepths(queueDepths)
             .successRate(Math.round(successRate * 100.0) / 100.0)
+            .latencyByType(metricsAggregator.getLatencyPercentiles())
+            .statusCountsByType(getStatusCountsByType())
             .build();
     }
     
-    private Long getMetricValue(String redisKey, Long dbFallback) {
-        Long value = (Long) redisTemplate.opsForValue().get(redisKey);
-        return value != null ? value : dbFallback;
+    private Long getMetricValue(String redisKey, Supplier<Long> dbFallback) {
+        Number value = (Number) redisTemplate.opsForValue().get(redisKey);
+        return value != null ? value.longValue() : dbFallback.get();
+    }
+    
+    /**
+     * Seeds the status counts from one grouped query whenever they are not
+     * marked seeded: on a fresh Redis and after it lost them. Until the
+     * marker is set the transition script keeps its updates as deltas; the
+     * seed script then replaces the counts with the database counts plus
+     * those deltas and sets the marker atomically, so updates racing the
+     * seed are not lost to it.
+     */
+    @Scheduled(fixedDelayString = "${task-queue.metrics.status-counts-check-interval:30000}")
+    public void seedStatusCounts() {
+        try {
+            if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(TaskTransitionScript.STATUS_COUNTS_SEEDED_KEY))) {
+                return;
+            }
+            // Deltas kept so far are already in the database counts read below; only a
+            // transition committed before the scan but applied after this delete counts twice
+            stringRedisTemplate.delete(TaskTransitionScript.STATUS_COUNTS_DELTAS_KEY);
+            
+            Set<String> taskTypes = new LinkedHashSet<>(executorService.getSupportedTaskTypes());
+            List<String> counts = new ArrayList<>();
+            for (Object[] row : taskRepository.countByTaskTypeAndStatus()) {
+                String taskType = (String) row[0];
+                taskTypes.add(taskType);
+                counts.add(taskType + "|" + ((TaskStatus) row[1]).name());
+                counts.add(String.valueOf(((Number) row[2]).longValue()));
+            }
+            
+            List<String> keys = new ArrayList<>(List.of(TaskTransitionScript.STATUS_COUNTS_SEEDED_KEY,
+                TaskTransitionScript.STATUS_COUNTS_DELTAS_KEY, TaskTransitionScript.STATUS_COUNTS_KEY));
+            List<String> args = new ArrayList<>();
+            args.add(String.valueOf(taskTypes.size()));
+            for (String taskType : taskTypes) {
+                keys.add(TaskTransitionScript.statusCountsKey(taskType));
+                args.add(taskType);
+            }
+            args.addAll(counts);
+            
+            Long seeded = stringRedisTemplate.execute(SEED_SCRIPT, keys, args.toArray());
+            if (seeded != null && seeded == 1) {
+                log.info("Seeded status counts of {} task types from the database", taskTypes.size());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not seed status counts: {}", e.getMessage());
+        }
+    }
+    
+    private Map<String, Map<TaskStatus, Long>> getStatusCountsByType() {
+        List<String> taskTypes = executorService.getSupportedTaskTypes();
+        List<Object> results = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> redisOperations) {
+                RedisOperations<String, String> operations = (RedisOperations<String, String>) redisOperations;
+                taskTypes.forEach(taskType ->
+                    operations.opsForHash().entries(TaskTransitionScript.statusCountsKey(taskType)));
+                return null;
+            }
+        });
+        
+        Map<String, Map<TaskStatus, Long>> countsByType = new HashMap<>();
+        for (int i = 0; i < taskTypes.size(); i++) {
+            @SuppressWarnings("unchecked")
+            Map<Object, Object> raw = (Map<Object, Object>) results.get(i);
+            countsByType.put(taskTypes.get(i), toStatusCounts(raw));
+        }
+        return countsByType;
+    }
+    
+    private Map<TaskStatus, Long> toStatusCounts(Map<Object, Object> raw) {
+        Map<TaskStatus, Long> counts = new EnumMap<>(TaskStatus.class);
+        for (TaskStatus status : TaskStatus.values()) {
+            Object value = raw.get(status.name());
+            counts.put(status, value != null ? Long.parseLong(value.toString()) : 0L);
+        }
+        return counts;
     }
     
-    private Integer getQueueSize(String priority) {
-        Long size = (Long) redisTemplate.opsForValue()
-            .get("queue:size:" + priority);
-        return size != null ? size.intValue() : 0;
+    private Double getAverageLatency() {
+        // Running sum/count flushed by MetricsAggregator
+        List<Object> values = redisTemplate.opsForHash()
+            .multiGet("metrics:latency", List.of("sum_ms", "count"));
+        Number sum = (Number) values.get(0);
+        Number count = (Number) values.get(1);
+        if (sum == null || count == null || count.longValue() == 0) {
+            return null;
+        }
+        return sum.doubleValue() / count.longValue();
+    }
+    
+    private record CachedResponse(MetricsResponse response, long expiresAtNanos) {
+        
+        boolean isFresh() {
+            return System.nanoTime() - expiresAtNanos < 0;
+        }
     }
 }
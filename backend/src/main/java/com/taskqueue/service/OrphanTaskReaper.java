@@ -0,0 +1,137 @@
+package com.taskqueue.service;
+
+import com.taskqueue.config.TaskQueueProperties;
+import com.taskqueue.model.DeadLetterTask;
+import com.taskqueue.model.Task;
+import com.taskqueue.model.TaskStatus;
+import com.taskqueue.queue.QueueBackend;
+import com.taskqueue.repository.DeadLetterTaskRepository;
+import com.taskqueue.repository.TaskBatchRepository;
+import com.taskqueue.websocket.TaskStatusBroadcaster;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recovers tasks whose worker died mid-execution. Once a PROCESSING task's
+ * lease lapses it goes back on the queue as a new attempt, or fails into
+ * the DLQ if it has none left, so a task that keeps killing workers cannot
+ * loop forever. Runs on every instance; rows are claimed with SKIP LOCKED,
+ * so concurrent reapers take disjoint batches.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrphanTaskReaper {
+    
+    // Keeps both the reaper's scan and the heartbeat's lease renewal to PROCESSING rows
+    private static final String LEASE_INDEX = "idx_task_processing_lease";
+    private static final String LEASE_INDEX_DEFINITION = "(lease_expires_at) WHERE status = 'PROCESSING'";
+    
+    private final TaskBatchRepository taskBatchRepository;
+    private final DeadLetterTaskRepository deadLetterTaskRepository;
+    private final QueueBackend queueBackend;
+    private final TaskTransitionScript transitionScript;
+    private final TaskStatusBroadcaster statusBroadcaster;
+    private final MetricsAggregator metricsAggregator;
+    private final WorkflowCoordinator workflowCoordinator;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskQueueProperties properties;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void createLeaseIndex() {
+        try {
+            // Built concurrently, so a fresh deployment does not hold up writes to a populated table
+            taskBatchRepository.createIndexConcurrently(LEASE_INDEX, LEASE_INDEX_DEFINITION);
+        } catch (RuntimeException e) {
+            log.warn("Could not create task lease index: {}", e.getMessage());
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${task-queue.worker.lease.reap-interval:10000}")
+    public void reap() {
+        TaskQueueProperties.Lease lease = properties.getWorker().getLease();
+        try {
+            Reclaimed reclaimed;
+            do {
+                reclaimed = transactionTemplate.execute(status -> reclaimBatch(lease));
+                if (reclaimed != null && !reclaimed.tasks().isEmpty()) {
+                    publish(reclaimed);
+                }
+            } while (reclaimed != null && reclaimed.tasks().size() == lease.getReapBatchSize());
+        } catch (RuntimeException e) {
+            log.error("Orphaned task recovery failed, will retry: {}", e.getMessage());
+        }
+    }
+    
+    private Reclaimed reclaimBatch(TaskQueueProperties.Lease lease) {
+        List<Task> reclaimed = taskBatchRepository.reclaimExpiredLeases(
+            LocalDateTime.now(), lease.getTtl(), lease.getReapBatchSize());
+        
+        List<Task> requeued = reclaimed.stream()
+            .filter(task -> task.getStatus() == TaskStatus.PENDING)
+            .toList();
+        if (!requeued.isEmpty()) {
+            queueBackend.enqueue(requeued);
+        }
+        
+        List<DeadLetterTask> dead = reclaimed.stream()
+            .filter(task -> task.getStatus() == TaskStatus.FAILED)
+            .map(task -> DeadLetterTask.builder()
+                .originalTaskId(task.getTaskId())
+                .taskType(task.getTaskType())
+                .payload(task.getPayload())
+                .failureReason(task.getErrorMessage())
+                .retryCount(task.getRetryCount())
+                .build())
+            .toList();
+        if (!dead.isEmpty()) {
+            deadLetterTaskRepository.saveAll(dead);
+        }
+        
+        // Failed workflow tasks are counted in the transaction that failed them
+        Map<Task, List<Task>> downstream = new LinkedHashMap<>();
+        reclaimed.stream()
+            .filter(task -> task.getStatus() == TaskStatus.FAILED && task.getWorkflowId() != null)
+            .forEach(task -> downstream.put(task, workflowCoordinator.recordFailure(task)));
+        return new Reclaimed(reclaimed, downstream);
+    }
+    
+    private void publish(Reclaimed batch) {
+        List<Task> reclaimed = batch.tasks();
+        transitionScript.applyAll(reclaimed.stream()
+            .map(task -> TaskTransitionScript.forTask(task, task.getStatus())
+                .previousStatus(TaskStatus.PROCESSING)
+                .build())
+            .toList());
+        
+        int requeued = 0;
+        for (Task task : reclaimed) {
+            statusBroadcaster.broadcastTaskUpdate(task.getTaskId(), task.getStatus());
+            if (task.getStatus() == TaskStatus.PENDING) {
+                metricsAggregator.recordRetried(task);
+                requeued++;
+            } else {
+                metricsAggregator.recordFailed(task);
+                List<Task> cancelled = batch.downstream().get(task);
+                if (cancelled != null) {
+                    workflowCoordinator.publishFailure(task, cancelled);
+                }
+            }
+        }
+        log.warn("Recovered {} orphaned tasks: {} requeued, {} failed",
+                 reclaimed.size(), requeued, reclaimed.size() - requeued);
+    }
+    
+    private record Reclaimed(List<Task> tasks, Map<Task, List<Task>> downstream) {
+    }
+}
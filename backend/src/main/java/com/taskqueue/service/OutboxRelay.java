@@ -0,0 +1,82 @@
+package com.taskqueue.service;
+
+import com.taskqueue.config.TaskQueueProperties;
+import com.taskqueue.model.OutboxMessage;
+import com.taskqueue.model.Task;
+import com.taskqueue.repository.OutboxMessageRepository;
+import com.taskqueue.repository.TaskRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Drains the task outbox to RabbitMQ. Rows are locked with SKIP LOCKED,
+ * published on a single channel and only deleted once the broker has
+ * confirmed the whole batch; a nack or timeout rolls the batch back so it
+ * is picked up again on the next poll.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "task-queue.queue", name = "backend", havingValue = "amqp", matchIfMissing = true)
+public class OutboxRelay {
+    
+    private final OutboxMessageRepository outboxRepository;
+    private final TaskRepository taskRepository;
+    private final RabbitTemplate rabbitTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskQueueProperties properties;
+    
+    @Scheduled(fixedDelayString = "${task-queue.outbox.poll-interval:100}")
+    public void relay() {
+        int batchSize = properties.getOutbox().getBatchSize();
+        try {
+            Integer relayed;
+            do {
+                relayed = transactionTemplate.execute(status -> relayBatch(batchSize));
+            } while (relayed != null && relayed == batchSize);
+        } catch (RuntimeException e) {
+            log.error("Outbox relay failed, batch will be retried: {}", e.getMessage());
+        }
+    }
+    
+    private int relayBatch(int batchSize) {
+        List<OutboxMessage> batch = outboxRepository.lockNextBatch(batchSize);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        
+        Map<String, Task> tasks = taskRepository.findByTaskIdIn(
+                batch.stream().map(OutboxMessage::getTaskId).toList())
+            .stream()
+            .collect(Collectors.toMap(Task::getTaskId, Function.identity()));
+        
+        long confirmTimeout = properties.getOutbox().getConfirmTimeout();
+        rabbitTemplate.invoke(operations -> {
+            for (OutboxMessage message : batch) {
+                Task task = tasks.get(message.getTaskId());
+                if (task == null) {
+                    log.warn("Dropping outbox entry for missing task {}", message.getTaskId());
+                    continue;
+                }
+                operations.convertAndSend(message.getRoutingKey(), task);
+            }
+            operations.waitForConfirmsOrDie(confirmTimeout);
+            return null;
+        });
+        
+        outboxRepository.deleteAllInBatch(batch);
+        
+        log.debug("Relayed {} outbox messages", batch.size());
+        return batch.size();
+    }
+}
@@ -0,0 +1,165 @@
+package com.taskqueue.service;
+
+import com.taskqueue.config.RabbitMQConfig;
+import com.taskqueue.config.TaskQueueProperties;
+import com.taskqueue.dto.QueueDepth;
+import com.taskqueue.model.Priority;
+import com.taskqueue.queue.QueueBackend;
+import com.taskqueue.queue.QueueStats;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Samples queue depth and consumer counts from the queue backend and measures how
+ * fast each priority queue is being drained, so wait time estimates follow
+ * actual throughput instead of drifting application-side counters.
+ *
+ * <p>The dequeue rate comes from the cluster-wide per-priority "started"
+ * counters flushed by {@link MetricsAggregator}, so it covers every worker
+ * instance, not just this one.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class QueueDepthProvider {
+    
+    // Weight of the newest rate sample in the moving average
+    private static final double RATE_SMOOTHING = 0.3;
+    
+    private final QueueBackend queueBackend;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final TaskQueueProperties properties;
+    
+    // Replaced whole by each sample, so readers never wait on the sampler
+    private volatile Map<Priority, QueueDepth> depths = new EnumMap<>(Priority.class);
+    // Sampler thread only
+    private final Map<Priority, long[]> lastStarted = new EnumMap<>(Priority.class);
+    
+    public static String queueName(Priority priority) {
+        return switch (priority) {
+            case HIGH -> RabbitMQConfig.HIGH_PRIORITY_QUEUE;
+            case MEDIUM -> RabbitMQConfig.MEDIUM_PRIORITY_QUEUE;
+            case LOW -> RabbitMQConfig.LOW_PRIORITY_QUEUE;
+        };
+    }
+    
+    /**
+     * Latest sample for the queue; never calls the backend. A sample older
+     * than the staleness bound, e.g. because the backend stopped answering,
+     * is served without a wait estimate.
+     */
+    public QueueDepth getDepth(Priority priority) {
+        QueueDepth depth = depths.get(priority);
+        if (depth == null) {
+            return emptyDepth(priority);
+        }
+        long ageMs = System.currentTimeMillis() - depth.getSampledAt().toEpochMilli();
+        if (ageMs <= properties.getQueueDepth().getMaxStaleness()) {
+            return depth;
+        }
+        return QueueDepth.builder()
+            .queue(depth.getQueue())
+            .messageCount(depth.getMessageCount())
+            .consumerCount(depth.getConsumerCount())
+            .dequeueRate(depth.getDequeueRate())
+            .sampledAt(depth.getSampledAt())
+            .build();
+    }
+    
+    public Map<Priority, QueueDepth> getDepths() {
+        Map<Priority, QueueDepth> result = new EnumMap<>(Priority.class);
+        for (Priority priority : Priority.values()) {
+            result.put(priority, getDepth(priority));
+        }
+        return result;
+    }
+    
+    @Scheduled(fixedDelayString = "${task-queue.queue-depth.sample-interval:1000}")
+    public synchronized void sample() {
+        long now = System.currentTimeMillis();
+        // A priority whose sample fails keeps its last one, with its own sampledAt
+        Map<Priority, QueueDepth> sampled = new EnumMap<>(depths);
+        Double avgLatencyMs = averageLatencyMs();
+        List<String> started = stringRedisTemplate.opsForValue().multiGet(
+            List.of(Priority.values()).stream().map(MetricsAggregator::startedKey).toList());
+        
+        for (Priority priority : Priority.values()) {
+            String queue = queueName(priority);
+            try {
+                QueueStats stats = queueBackend.getStats(priority);
+                long messageCount = stats.getMessageCount();
+                int consumerCount = stats.getConsumerCount();
+                
+                String startedValue = started != null ? started.get(priority.ordinal()) : null;
+                double rate = updateRate(priority, startedValue != null ? Long.parseLong(startedValue) : 0, now);
+                
+                sampled.put(priority, QueueDepth.builder()
+                    .queue(queue)
+                    .messageCount(messageCount)
+                    .consumerCount(consumerCount)
+                    .dequeueRate(Math.round(rate * 100.0) / 100.0)
+                    .estimatedWaitMs(estimateWaitMs(messageCount, consumerCount, rate, avgLatencyMs))
+                    .sampledAt(Instant.ofEpochMilli(now))
+                    .build());
+            } catch (RuntimeException e) {
+                log.warn("Could not sample depth of queue {}: {}", queue, e.getMessage());
+            }
+        }
+        depths = sampled;
+    }
+    
+    private double updateRate(Priority priority, long startedTotal, long now) {
+        long[] previous = lastStarted.put(priority, new long[] {startedTotal, now});
+        QueueDepth last = depths.get(priority);
+        double lastRate = last != null ? last.getDequeueRate() : 0.0;
+        if (previous == null || now <= previous[1] || startedTotal < previous[0]) {
+            return lastRate;
+        }
+        double instant = (startedTotal - previous[0]) * 1000.0 / (now - previous[1]);
+        return RATE_SMOOTHING * instant + (1 - RATE_SMOOTHING) * lastRate;
+    }
+    
+    /**
+     * Uses the measured drain rate when there is one; otherwise falls back to
+     * average task latency spread across the queue's consumers.
+     */
+    private Long estimateWaitMs(long messageCount, int consumerCount, double rate, Double avgLatencyMs) {
+        if (messageCount == 0) {
+            return 0L;
+        }
+        if (rate > 0) {
+            return Math.round(messageCount * 1000.0 / rate);
+        }
+        if (consumerCount > 0 && avgLatencyMs != null) {
+            return Math.round(messageCount * avgLatencyMs / consumerCount);
+        }
+        return null;
+    }
+    
+    private Double averageLatencyMs() {
+        List<Object> values = stringRedisTemplate.opsForHash()
+            .multiGet("metrics:latency", List.of("sum_ms", "count"));
+        if (values.get(0) == null || values.get(1) == null) {
+            return null;
+        }
+        long count = Long.parseLong(values.get(1).toString());
+        return count > 0 ? Long.parseLong(values.get(0).toString()) / (double) count : null;
+    }
+    
+    private QueueDepth emptyDepth(Priority priority) {
+        return QueueDepth.builder()
+            .queue(queueName(priority))
+            .messageCount(0L)
+            .consumerCount(0)
+            .dequeueRate(0.0)
+            .build();
+    }
+}
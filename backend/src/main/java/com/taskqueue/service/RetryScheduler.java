@@ -0,0 +1,143 @@
+package com.taskqueue.service;
+
+import com.taskqueue.config.RabbitMQConfig;
+import com.taskqueue.config.TaskQueueProperties;
+import com.taskqueue.model.Task;
+import com.taskqueue.model.TaskStatus;
+import com.taskqueue.repository.TaskRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Delayed retries backed by a Redis sorted set scored by due time. Failed
+ * tasks are parked here instead of sleeping on the listener thread, and a
+ * scheduled drain republishes them once their backoff has expired. A retry
+ * leaves the set only after the broker confirmed its publish; until then it
+ * is hidden from other instances by a claim that lapses if this one dies.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RetryScheduler {
+    
+    static final String RETRY_SCHEDULE_KEY = "retry:schedule";
+    
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> CLAIM_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/retry_claim.lua"), List.class);
+    private static final RedisScript<Long> RELEASE_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/retry_release.lua"), Long.class);
+    
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final TaskRepository taskRepository;
+    private final RabbitTemplate rabbitTemplate;
+    private final TaskQueueProperties properties;
+    
+    /**
+     * Exponential backoff for the given attempt number (1-based), capped at
+     * max-interval and spread by the configured jitter.
+     */
+    public long computeDelay(int attempt) {
+        TaskQueueProperties.Retry retry = properties.getRetry();
+        double base = retry.getInitialInterval()
+            * Math.pow(retry.getBackoffMultiplier(), Math.max(0, attempt - 1));
+        double capped = Math.min(base, retry.getMaxInterval());
+        
+        double jitter = Math.max(0.0, Math.min(1.0, retry.getJitter()));
+        double factor = 1.0 + (ThreadLocalRandom.current().nextDouble() * 2 - 1) * jitter;
+        return Math.max(0L, Math.round(capped * factor));
+    }
+    
+    /**
+     * Parks the task until {@code delayMs} from now. Inside a transaction
+     * the entry is only added once it commits, so the drain never reads the
+     * task's row before its PENDING status is visible.
+     */
+    public void schedule(Task task, long delayMs) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add(task.getTaskId(), delayMs);
+                }
+            });
+            return;
+        }
+        add(task.getTaskId(), delayMs);
+    }
+    
+    private void add(String taskId, long delayMs) {
+        long dueAt = System.currentTimeMillis() + delayMs;
+        redisTemplate.opsForZSet().add(RETRY_SCHEDULE_KEY, taskId, dueAt);
+        log.debug("Scheduled retry for task {} in {}ms", taskId, delayMs);
+    }
+    
+    @Scheduled(fixedDelayString = "${task-queue.retry.poll-interval:200}")
+    public void releaseDueRetries() {
+        TaskQueueProperties.Retry retry = properties.getRetry();
+        long now = System.currentTimeMillis();
+        long claimedScore = now + retry.getClaimTimeout();
+        List<String> claimed = claim(now, claimedScore, retry.getReleaseBatchSize());
+        if (claimed.isEmpty()) {
+            return;
+        }
+        
+        // Tasks cancelled or otherwise resolved while waiting are published
+        // nowhere and just leave the schedule
+        List<Task> tasks = taskRepository.findByTaskIdIn(claimed).stream()
+            .filter(task -> task.getStatus() == TaskStatus.PENDING)
+            .toList();
+        try {
+            if (!tasks.isEmpty()) {
+                rabbitTemplate.invoke(operations -> {
+                    tasks.forEach(task -> operations.convertAndSend(getQueueByPriority(task), task));
+                    operations.waitForConfirmsOrDie(properties.getOutbox().getConfirmTimeout());
+                    return null;
+                });
+            }
+        } catch (RuntimeException e) {
+            // Left claimed; due again once the claim times out
+            log.error("Failed to release {} retries, retrying in {}ms: {}",
+                      tasks.size(), retry.getClaimTimeout(), e.getMessage());
+            return;
+        }
+        
+        List<Object> args = new ArrayList<>(claimed.size() + 1);
+        args.add(claimedScore);
+        args.addAll(claimed);
+        redisTemplate.execute(RELEASE_SCRIPT, List.of(RETRY_SCHEDULE_KEY), args.toArray());
+        log.debug("Released {} due retries", tasks.size());
+    }
+    
+    /**
+     * Claims up to {@code limit} due retries by moving their score to
+     * {@code claimedScore}, atomically, so concurrent instances never
+     * release the same retry twice.
+     */
+    @SuppressWarnings("unchecked")
+    private List<String> claim(long now, long claimedScore, int limit) {
+        List<String> claimed = redisTemplate.execute(CLAIM_SCRIPT, List.of(RETRY_SCHEDULE_KEY),
+            now, claimedScore, limit);
+        return claimed != null ? claimed : List.of();
+    }
+    
+    private String getQueueByPriority(Task task) {
+        return switch (task.getPriority()) {
+            case HIGH -> RabbitMQConfig.HIGH_PRIORITY_QUEUE;
+            case MEDIUM -> RabbitMQConfig.MEDIUM_PRIORITY_QUEUE;
+            case LOW -> RabbitMQConfig.LOW_PRIORITY_QUEUE;
+        };
+    }
+}
@@ -0,0 +1,200 @@
+package com.taskqueue.service;
+
+import com.taskqueue.config.TaskQueueProperties;
+import com.taskqueue.model.Task;
+import com.taskqueue.repository.TaskBatchRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Holds tasks with a future scheduledAt out of the broker until they are
+ * due. The lease holder periodically loads tasks due within the next window
+ * into an in-memory {@link TimingWheel}; a ticker thread takes due tasks off
+ * the wheel, marks them dispatched and writes them to the outbox in one
+ * transaction, then relays the outbox straight away. The dispatched marker
+ * makes a brief overlap between two lease holders harmless.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "task-queue.queue", name = "backend", havingValue = "amqp", matchIfMissing = true)
+public class ScheduledTaskDispatcher implements SmartLifecycle {
+    
+    static final String LEASE_KEY = "scheduler:lease";
+    
+    // Only undispatched first-attempt scheduled rows; retries wait in the RetryScheduler
+    private static final String DUE_INDEX = "idx_task_scheduled_due";
+    private static final String DUE_INDEX_DEFINITION = "(scheduled_at) " +
+        "WHERE status = 'PENDING' AND dispatched_at IS NULL AND retry_count = 0 AND scheduled_at IS NOT NULL";
+    
+    private static final RedisScript<Long> RENEW_SCRIPT = RedisScript.of(
+        "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) end return 0",
+        Long.class);
+    private static final RedisScript<Long> RELEASE_SCRIPT = RedisScript.of(
+        "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) end return 0",
+        Long.class);
+    
+    private final TaskBatchRepository taskBatchRepository;
+    private final OutboxRelay outboxRelay;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskQueueProperties properties;
+    
+    private final String instanceId = UUID.randomUUID().toString();
+    private TimingWheel<String> wheel;
+    private Thread ticker;
+    private volatile boolean running;
+    private volatile boolean leader;
+    
+    @Override
+    public void start() {
+        try {
+            // Built concurrently, so a fresh deployment does not hold up writes to a populated table
+            taskBatchRepository.createIndexConcurrently(DUE_INDEX, DUE_INDEX_DEFINITION);
+        } catch (RuntimeException e) {
+            log.warn("Could not create scheduled task index: {}", e.getMessage());
+        }
+        TaskQueueProperties.Scheduler config = properties.getScheduler();
+        wheel = new TimingWheel<>(config.getTickMs(), config.getWheelSize(), System.currentTimeMillis());
+        running = true;
+        ticker = Thread.ofPlatform().name("scheduled-dispatch").daemon().start(this::tickLoop);
+    }
+    
+    @Override
+    public void stop() {
+        running = false;
+        ticker.interrupt();
+        if (leader) {
+            leader = false;
+            try {
+                stringRedisTemplate.execute(RELEASE_SCRIPT, List.of(LEASE_KEY), instanceId);
+            } catch (RuntimeException e) {
+                log.warn("Could not release scheduler lease: {}", e.getMessage());
+            }
+        }
+    }
+    
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+    
+    @Scheduled(fixedDelayString = "${task-queue.scheduler.load-interval:1000}")
+    public void load() {
+        if (!running) {
+            return;
+        }
+        try {
+            if (!holdLease()) {
+                return;
+            }
+            TaskQueueProperties.Scheduler config = properties.getScheduler();
+            LocalDateTime horizon = LocalDateTime.now().plus(Duration.ofMillis(config.getWindow()));
+            int pageSize = Math.max(1, config.getLoadBatchSize());
+            
+            // Pages are read back to back until the window is covered, so a burst due at one
+            // instant is on the wheel in this cycle rather than spread over later ones
+            int added = 0;
+            Task last = null;
+            List<Task> page;
+            do {
+                page = taskBatchRepository.findDueScheduled(horizon, last, pageSize);
+                synchronized (wheel) {
+                    for (Task task : page) {
+                        if (wheel.add(task.getTaskId(), toEpochMillis(task.getScheduledAt()))) {
+                            added++;
+                        }
+                    }
+                }
+                if (!page.isEmpty()) {
+                    last = page.get(page.size() - 1);
+                }
+            } while (page.size() == pageSize && running && leader);
+            if (added > 0) {
+                log.debug("Loaded {} scheduled tasks, {} waiting", added, wheel.size());
+            }
+        } catch (RuntimeException e) {
+            log.error("Loading scheduled tasks failed: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Acquires or renews the lease. Losing it drops everything loaded so far;
+     * the new holder reloads the same rows from the table.
+     */
+    private boolean holdLease() {
+        long ttl = properties.getScheduler().getLeaseTtl();
+        if (leader) {
+            Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT, List.of(LEASE_KEY), instanceId, String.valueOf(ttl));
+            if (renewed == null || renewed == 0) {
+                log.info("Lost scheduler lease");
+                leader = false;
+                synchronized (wheel) {
+                    wheel.clear();
+                }
+            }
+        } else {
+            Boolean acquired = stringRedisTemplate.opsForValue()
+                .setIfAbsent(LEASE_KEY, instanceId, Duration.ofMillis(ttl));
+            leader = Boolean.TRUE.equals(acquired);
+            if (leader) {
+                log.info("Acquired scheduler lease as {}", instanceId);
+            }
+        }
+        return leader;
+    }
+    
+    private void tickLoop() {
+        long tickMs = properties.getScheduler().getTickMs();
+        while (running) {
+            try {
+                List<String> due;
+                synchronized (wheel) {
+                    due = wheel.advance(System.currentTimeMillis());
+                }
+                if (!due.isEmpty() && leader) {
+                    dispatch(due);
+                }
+                // Wake on the next tick boundary
+                Thread.sleep(tickMs - System.currentTimeMillis() % tickMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // Undispatched rows stay in the index and come back on the next load
+                log.error("Dispatching scheduled tasks failed: {}", e.getMessage());
+            }
+        }
+    }
+    
+    private void dispatch(List<String> taskIds) {
+        List<Task> dispatched = transactionTemplate.execute(status -> {
+            List<Task> marked = taskBatchRepository.markDispatched(taskIds);
+            if (!marked.isEmpty()) {
+                taskBatchRepository.insertOutbox(marked, task -> QueueDepthProvider.queueName(task.getPriority()));
+            }
+            return marked;
+        });
+        if (dispatched != null && !dispatched.isEmpty()) {
+            outboxRelay.relay();
+            log.debug("Dispatched {} scheduled tasks", dispatched.size());
+        }
+    }
+    
+    private static long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,189 @@
+package com.taskqueue.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.taskqueue.config.TaskQueueProperties;
+import com.taskqueue.dto.TaskResponse;
+import com.taskqueue.model.Task;
+import com.taskqueue.model.TaskStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Redis fast path for duplicate submissions. An idempotency key is claimed
+ * with SET NX before the insert, so a client retry finds the original task
+ * without a DB round-trip; the unique index on idempotency_key catches
+ * whatever slips past (Redis down, key expired). For task types listed in
+ * coalesce-types, a submission whose payload matches a task that is still
+ * PENDING is folded into that task as well.
+ */
+@Slf4j
+@Service
+public class SubmissionDeduplicator {
+    
+    private static final String IDEMPOTENCY_KEY_PREFIX = "idempotency:";
+    private static final String COALESCE_KEY_PREFIX = "coalesce:";
+    
+    private final StringRedisTemplate stringRedisTemplate;
+    private final TaskStatusCache taskStatusCache;
+    private final TaskQueueProperties properties;
+    // Sorted map keys make equal payloads serialize, and so hash, the same
+    private final ObjectMapper canonicalMapper;
+    
+    public SubmissionDeduplicator(StringRedisTemplate stringRedisTemplate, TaskStatusCache taskStatusCache,
+                                  TaskQueueProperties properties, ObjectMapper objectMapper) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.taskStatusCache = taskStatusCache;
+        this.properties = properties;
+        this.canonicalMapper = objectMapper.copy().enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+    }
+    
+    /**
+     * Claims the task's idempotency key and, if its type coalesces, its
+     * content hash.
+     *
+     * @return the id of the task this submission duplicates, if any
+     */
+    public Optional<String> claim(Task task) {
+        Optional<String> original = claimIdempotencyKey(task);
+        if (original.isPresent()) {
+            return original;
+        }
+        Optional<String> pending = claimContent(task);
+        if (pending.isPresent()) {
+            // Stays claimed, so retries with this key resolve to the coalesced task
+            remember(task.getIdempotencyKey(), pending.get());
+        }
+        return pending;
+    }
+    
+    /**
+     * Drops the claims of a task that was not persisted.
+     */
+    public void release(Task task) {
+        delete(idempotencyKey(task.getIdempotencyKey()), task.getTaskId());
+        if (coalesces(task)) {
+            delete(coalesceKey(task), task.getTaskId());
+        }
+    }
+    
+    /**
+     * Points the idempotency key at an existing task, after the unique index
+     * resolved a duplicate Redis did not know about.
+     */
+    public void remember(String idempotencyKey, String taskId) {
+        if (idempotencyKey == null) {
+            return;
+        }
+        try {
+            stringRedisTemplate.opsForValue().set(idempotencyKey(idempotencyKey), taskId, idempotencyTtl());
+        } catch (DataAccessException e) {
+            log.warn("Could not store idempotency key: {}", e.getMessage());
+        }
+    }
+    
+    private Optional<String> claimIdempotencyKey(Task task) {
+        if (task.getIdempotencyKey() == null) {
+            return Optional.empty();
+        }
+        return setIfAbsent(idempotencyKey(task.getIdempotencyKey()), task.getTaskId(), idempotencyTtl());
+    }
+    
+    private Optional<String> claimContent(Task task) {
+        if (!coalesces(task)) {
+            return Optional.empty();
+        }
+        String key = coalesceKey(task);
+        Duration ttl = Duration.ofMillis(properties.getSubmission().getCoalesceTtl());
+        Optional<String> existing = setIfAbsent(key, task.getTaskId(), ttl);
+        if (existing.isEmpty() || isPending(existing.get())) {
+            return existing;
+        }
+        // The earlier task already started; this submission runs on its own
+        try {
+            stringRedisTemplate.opsForValue().set(key, task.getTaskId(), ttl);
+        } catch (DataAccessException e) {
+            log.warn("Could not store coalescing key: {}", e.getMessage());
+        }
+        return Optional.empty();
+    }
+    
+    /**
+     * @return the current holder if the key was already taken; empty if it
+     * was claimed or Redis is unavailable
+     */
+    private Optional<String> setIfAbsent(String key, String taskId, Duration ttl) {
+        try {
+            if (Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(key, taskId, ttl))) {
+                return Optional.empty();
+            }
+            return Optional.ofNullable(stringRedisTemplate.opsForValue().get(key))
+                .filter(holder -> !holder.equals(taskId));
+        } catch (DataAccessException e) {
+            log.warn("Deduplication check unavailable: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+    
+    private boolean isPending(String taskId) {
+        try {
+            TaskResponse existing = taskStatusCache.get(taskId);
+            return existing.getStatus() == TaskStatus.PENDING;
+        } catch (IllegalArgumentException e) {
+            // Claimed but not committed yet
+            return true;
+        }
+    }
+    
+    private void delete(String key, String taskId) {
+        if (key == null) {
+            return;
+        }
+        try {
+            // Only if we still hold it; another submission may have taken over
+            if (Objects.equals(stringRedisTemplate.opsForValue().get(key), taskId)) {
+                stringRedisTemplate.delete(key);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not release deduplication key: {}", e.getMessage());
+        }
+    }
+    
+    private boolean coalesces(Task task) {
+        // A scheduled task is not interchangeable with one that runs now
+        return task.getScheduledAt() == null
+            && properties.getSubmission().getCoalesceTypes().contains(task.getTaskType());
+    }
+    
+    private Duration idempotencyTtl() {
+        return Duration.ofMillis(properties.getSubmission().getIdempotencyTtl());
+    }
+    
+    private static String idempotencyKey(String key) {
+        return key != null ? IDEMPOTENCY_KEY_PREFIX + key : null;
+    }
+    
+    private String coalesceKey(Task task) {
+        try {
+            byte[] json = canonicalMapper.writeValueAsBytes(task.getPayload());
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(task.getTaskType().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(json);
+            return COALESCE_KEY_PREFIX + task.getTaskType() + ":" + HexFormat.of().formatHex(digest.digest());
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not hash payload of task " + task.getTaskId(), e);
+        }
+    }
+}
@@ -1,40 +1,137 @@
 package com.taskqueue.service;
 
+import com.taskqueue.config.TaskQueueProperties;
+import com.taskqueue.executor.AsyncTaskExecutor;
+import com.taskqueue.executor.CancellationToken;
+import com.taskqueue.executor.TaskContext;
 import com.taskqueue.executor.TaskExecutor;
+import com.taskqueue.executor.TaskResult;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Service
 public class TaskExecutorService {
     
-    private final Map<String, TaskExecutor> executors = new HashMap<>();
+    private final Map<String, AsyncTaskExecutor> executors = new HashMap<>();
+    private final Map<String, TaskExecutor> syncExecutors = new HashMap<>();
+    
+    // Legacy blocking executors run here when invoked asynchronously
+    private final ExecutorService blockingExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    // Fires execution timeouts
+    private final ScheduledThreadPoolExecutor timeoutTimer = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "task-timeouts");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private final TaskQueueProperties properties;
     
     @Autowired
-    public TaskExecutorService(List<TaskExecutor> executorList) {
-        // Auto-register all executor implementations
+    public TaskExecutorService(List<TaskExecutor> executorList,
+                               ObjectProvider<AsyncTaskExecutor> asyncExecutorList,
+                               TaskQueueProperties properties) {
+        this.properties = properties;
+        timeoutTimer.setRemoveOnCancelPolicy(true);
+        // Auto-register all executor implementations; synchronous ones are adapted
         executorList.forEach(executor -> {
-            executors.put(executor.getTaskType(), executor);
+            syncExecutors.put(executor.getTaskType(), executor);
+            executors.put(executor.getTaskType(), adapt(executor));
             log.info("Registered executor for task type: {}", executor.getTaskType());
         });
+        asyncExecutorList.orderedStream().forEach(executor -> {
+            executors.put(executor.getTaskType(), executor);
+            syncExecutors.remove(executor.getTaskType());
+            log.info("Registered async executor for task type: {}", executor.getTaskType());
+        });
     }
     
     public void execute(String taskType, Map<String, Object> payload) throws Exception {
-        TaskExecutor executor = executors.get(taskType);
+        TaskExecutor syncExecutor = syncExecutors.get(taskType);
+        // With a timeout the task has to run on another thread so the caller can give up on it
+        if (syncExecutor != null && timeoutFor(taskType) <= 0) {
+            log.info("Executing task type: {} with executor: {}", taskType, syncExecutor.getClass().getSimpleName());
+            syncExecutor.execute(payload);
+            return;
+        }
+        
+        // Async-only executor: wait for it on the calling thread
+        TaskContext context = TaskContext.builder().taskType(taskType).payload(payload).build();
+        try {
+            executeAsync(context).toCompletableFuture().get();
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+    
+    /**
+     * Starts the task and returns a stage that completes with its result.
+     * Never throws; lookup and execution errors complete the stage exceptionally.
+     * If the context's cancellation token is cancelled, or the task type's
+     * timeout passes first, the stage fails right away with the token's
+     * reason and blocking executors are interrupted, so the caller is freed
+     * even if the executor ignores the signal.
+     */
+    public CompletionStage<TaskResult> executeAsync(TaskContext context) {
+        AsyncTaskExecutor executor = executors.get(context.getTaskType());
         
         if (executor == null) {
-            throw new UnsupportedOperationException(
-                "No executor found for task type: " + taskType
-            );
+            return CompletableFuture.failedFuture(new UnsupportedOperationException(
+                "No executor found for task type: " + context.getTaskType()
+            ));
         }
         
-        log.info("Executing task type: {} with executor: {}", taskType, executor.getClass().getSimpleName());
-        executor.execute(payload);
+        log.info("Executing task type: {} with executor: {}", context.getTaskType(), executor.getClass().getSimpleName());
+        CompletableFuture<TaskResult> execution;
+        try {
+            execution = executor.executeAsync(context).toCompletableFuture();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return guard(execution, context);
+    }
+    
+    private CompletableFuture<TaskResult> guard(CompletableFuture<TaskResult> execution, TaskContext context) {
+        CancellationToken token = context.getCancellationToken();
+        CompletableFuture<TaskResult> outcome = new CompletableFuture<>();
+        execution.whenComplete((result, error) -> {
+            if (error != null) {
+                outcome.completeExceptionally(error);
+            } else {
+                outcome.complete(result);
+            }
+        });
+        Runnable unsubscribe = token.onCancel(() -> outcome.completeExceptionally(token.getReason()));
+        outcome.whenComplete((result, error) -> unsubscribe.run());
+        
+        long timeoutMs = timeoutFor(context.getTaskType());
+        if (timeoutMs > 0 && !outcome.isDone()) {
+            ScheduledFuture<?> timer = timeoutTimer.schedule(() -> token.timeout(timeoutMs), timeoutMs, TimeUnit.MILLISECONDS);
+            outcome.whenComplete((result, error) -> timer.cancel(false));
+        }
+        return outcome;
+    }
+    
+    private long timeoutFor(String taskType) {
+        TaskQueueProperties.ExecutorLimit limit = properties.getExecutorLimits().get(taskType);
+        return limit != null ? limit.getTimeout() : 0;
     }
     
     public boolean isTaskTypeSupported(String taskType) {
@@ -44,4 +141,48 @@ public class TaskExecutorService {
     public List<String> getSupportedTaskTypes() {
         return List.copyOf(executors.keySet());
     }
+    
+    /**
+     * Unwraps the CompletionException/ExecutionException layers added by
+     * futures so callers see the executor's original failure.
+     */
+    public static Exception unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof Exception e ? e : new RuntimeException(cause);
+    }
+    
+    private AsyncTaskExecutor adapt(TaskExecutor executor) {
+        return new AsyncTaskExecutor() {
+            @Override
+            public String getTaskType() {
+                return executor.getTaskType();
+            }
+            
+            @Override
+            public CompletionStage<TaskResult> executeAsync(TaskContext context) {
+                CompletableFuture<TaskResult> result = new CompletableFuture<>();
+                Future<?> running = blockingExecutor.submit(() -> {
+                    try {
+                        executor.execute(context.getPayload());
+                        result.complete(TaskResult.empty());
+                    } catch (Exception e) {
+                        result.completeExceptionally(e);
+                    }
+                });
+                // Blocking executors only see cancellation as an interrupt
+                Runnable unsubscribe = context.getCancellationToken().onCancel(() -> running.cancel(true));
+                return result.whenComplete((output, error) -> unsubscribe.run());
+            }
+        };
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        timeoutTimer.shutdownNow();
+        blockingExecutor.shutdown();
+    }
 }
@@ -0,0 +1,74 @@
+package com.taskqueue.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.taskqueue.config.TaskQueueProperties;
+import com.taskqueue.dto.TaskCursor;
+import com.taskqueue.dto.TaskFilter;
+import com.taskqueue.dto.TaskPageResponse;
+import com.taskqueue.dto.TaskSummary;
+import com.taskqueue.repository.TaskQueryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TaskQueryService {
+    
+    private static final byte[] NEWLINE = {'\n'};
+    
+    private final TaskQueryRepository taskQueryRepository;
+    private final ObjectMapper objectMapper;
+    private final TaskQueueProperties properties;
+    
+    public TaskPageResponse listTasks(TaskFilter filter, String cursor, Integer limit, boolean includeTotal) {
+        TaskQueueProperties.Listing listing = properties.getListing();
+        int pageSize = limit == null ? listing.getDefaultPageSize() : limit;
+        if (pageSize < 1 || pageSize > listing.getMaxPageSize()) {
+            throw new IllegalArgumentException("limit must be between 1 and " + listing.getMaxPageSize());
+        }
+        TaskCursor after = cursor != null ? TaskCursor.decode(cursor) : null;
+        
+        // Fetch one extra row to know whether another page exists without counting
+        List<TaskSummary> rows = taskQueryRepository.findPage(filter, after, pageSize + 1);
+        boolean hasMore = rows.size() > pageSize;
+        List<TaskSummary> items = hasMore ? rows.subList(0, pageSize) : rows;
+        
+        return TaskPageResponse.builder()
+            .items(items)
+            .nextCursor(hasMore ? TaskCursor.after(items.get(items.size() - 1)).encode() : null)
+            .total(includeTotal ? taskQueryRepository.count(filter) : null)
+            .build();
+    }
+    
+    /**
+     * Writes every matching task as one JSON object per line. Walks the
+     * keyset in pages, so memory use and transaction length stay bounded
+     * regardless of the export size.
+     */
+    public void exportTasks(TaskFilter filter, OutputStream out) throws IOException {
+        int pageSize = properties.getListing().getExportPageSize();
+        TaskCursor after = null;
+        long exported = 0;
+        List<TaskSummary> page;
+        do {
+            page = taskQueryRepository.findPage(filter, after, pageSize);
+            for (TaskSummary task : page) {
+                out.write(objectMapper.writeValueAsBytes(task));
+                out.write(NEWLINE);
+            }
+            out.flush();
+            exported += page.size();
+            if (!page.isEmpty()) {
+                after = TaskCursor.after(page.get(page.size() - 1));
+            }
+        } while (page.size() == pageSize);
+        
+        log.info("Exported {} tasks", exported);
+    }
+}
@@ -0,0 +1,152 @@
+package com.taskqueue.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.taskqueue.config.TaskQueueProperties;
+import com.taskqueue.dto.TaskResponse;
+import com.taskqueue.model.Priority;
+import com.taskqueue.model.Task;
+import com.taskqueue.model.TaskStatus;
+import com.taskqueue.repository.TaskRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-through cache for task status lookups: a bounded in-process near
+ * cache, then the {@code task:status:{id}} Redis hash kept current by
+ * {@link TaskTransitionScript}, then the database. Every transition
+ * publishes the task's status key, and each instance drops that task from
+ * its near cache; the near-cache TTL bounds staleness if a message is lost.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TaskStatusCache {
+    
+    private static final RedisScript<Long> REPOPULATE_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/status_repopulate.lua"), Long.class);
+    
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final TaskRepository taskRepository;
+    private final MeterRegistry meterRegistry;
+    private final TaskQueueProperties properties;
+    
+    private Cache<String, TaskResponse> nearCache;
+    private Counter redisHits;
+    private Counter redisMisses;
+    
+    @PostConstruct
+    public void init() {
+        TaskQueueProperties.StatusCache config = properties.getStatusCache();
+        nearCache = Caffeine.newBuilder()
+            .maximumSize(config.getNearMaxSize())
+            .expireAfterWrite(Duration.ofMillis(config.getNearTtl()))
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, nearCache, "task-status-near");
+        redisHits = meterRegistry.counter("taskqueue.status.cache", "tier", "redis", "result", "hit");
+        redisMisses = meterRegistry.counter("taskqueue.status.cache", "tier", "redis", "result", "miss");
+        
+        listenerContainer.addMessageListener((message, pattern) -> {
+            String statusKey = new String(message.getBody(), StandardCharsets.UTF_8);
+            nearCache.invalidate(TaskTransitionScript.taskIdFromStatusKey(statusKey));
+        }, new ChannelTopic(TaskTransitionScript.STATUS_CHANGED_CHANNEL));
+    }
+    
+    /**
+     * @throws IllegalArgumentException if the task does not exist
+     */
+    public TaskResponse get(String taskId) {
+        return nearCache.get(taskId, this::load);
+    }
+    
+    private TaskResponse load(String taskId) {
+        String statusKey = TaskTransitionScript.statusKey(taskId);
+        try {
+            Map<Object, Object> hash = stringRedisTemplate.opsForHash().entries(statusKey);
+            // Hashes written by older versions lack the response fields
+            if (hash.containsKey("createdAt")) {
+                redisHits.increment();
+                return fromHash(taskId, hash);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Status cache read failed for task {}: {}", taskId, e.getMessage());
+        }
+        redisMisses.increment();
+        
+        Task task = taskRepository.findByTaskId(taskId)
+            .orElseThrow(() -> new IllegalArgumentException("Task not found: " + taskId));
+        TaskResponse response = fromTask(task);
+        repopulate(statusKey, task);
+        return response;
+    }
+    
+    // Only fills a missing hash: a transition applied since the row was read is newer than the row
+    private void repopulate(String statusKey, Task task) {
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(TaskTransitionScript.STATUS_TTL.toSeconds()));
+        args.add("status");
+        args.add(task.getStatus().name());
+        TaskTransitionScript.forTask(task, task.getStatus()).build().getFields()
+            .forEach((field, value) -> {
+                if (value != null) {
+                    args.add(field);
+                    args.add(value);
+                }
+            });
+        try {
+            stringRedisTemplate.execute(REPOPULATE_SCRIPT, List.of(statusKey), args.toArray());
+        } catch (DataAccessException e) {
+            log.warn("Could not repopulate status cache for task {}: {}", task.getTaskId(), e.getMessage());
+        }
+    }
+    
+    private TaskResponse fromHash(String taskId, Map<Object, Object> hash) {
+        return TaskResponse.builder()
+            .taskId(taskId)
+            .taskType((String) hash.get("taskType"))
+            .priority(Priority.valueOf((String) hash.get("priority")))
+            .status(TaskStatus.valueOf((String) hash.get("status")))
+            .createdAt(parseTime(hash.get("createdAt")))
+            .completedAt(parseTime(hash.get("completedAt")))
+            .errorMessage((String) hash.get("errorMessage"))
+            .retryCount(hash.containsKey("retryCount") ? Integer.valueOf((String) hash.get("retryCount")) : null)
+            .build();
+    }
+    
+    private TaskResponse fromTask(Task task) {
+        return TaskResponse.builder()
+            .taskId(task.getTaskId())
+            .taskType(task.getTaskType())
+            .priority(task.getPriority())
+            .status(task.getStatus())
+            .createdAt(task.getCreatedAt())
+            .completedAt(task.getCompletedAt())
+            .errorMessage(task.getErrorMessage())
+            .retryCount(task.getRetryCount())
+            .build();
+    }
+    
+    private LocalDateTime parseTime(Object value) {
+        return value != null ? LocalDateTime.parse((String) value) : null;
+    }
+}
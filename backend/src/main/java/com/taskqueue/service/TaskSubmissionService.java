@@ -1,22 +1,35 @@
 package com.taskqueue.service;
 
-import com.taskqueue.config.RabbitMQConfig;
+import com.taskqueue.config.TaskQueueProperties;
+import com.taskqueue.dto.BatchTaskResponse;
 import com.taskqueue.dto.TaskRequest;
 import com.taskqueue.dto.TaskResponse;
 import com.taskqueue.model.Priority;
 import com.taskqueue.model.Task;
 import com.taskqueue.model.TaskStatus;
+import com.taskqueue.queue.QueueBackend;
+import com.taskqueue.repository.TaskBatchRepository;
 import com.taskqueue.repository.TaskRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -24,11 +37,20 @@ import java.util.concurrent.TimeUnit;
 public class TaskSubmissionService {
     
     private final TaskRepository taskRepository;
-    private final RabbitTemplate rabbitTemplate;
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final QueueBackend queueBackend;
     private final TaskExecutorService executorService;
+    private final TaskBatchRepository taskBatchRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final TaskQueueProperties properties;
+    private final TaskTransitionScript transitionScript;
+    private final MetricsAggregator metricsAggregator;
+    private final QueueDepthProvider queueDepthProvider;
+    private final TaskStatusCache taskStatusCache;
+    private final SubmissionDeduplicator deduplicator;
+    private final CancellationRegistry cancellationRegistry;
+    private final WorkflowCoordinator workflowCoordinator;
     
-    @Transactional
     public TaskResponse submitTask(TaskRequest request) {
         // Validate task type
         if (!executorService.isTaskTypeSupported(request.getTaskType())) {
@@ -37,74 +59,255 @@ public class TaskSubmissionService {
             );
         }
         
+        Task task = buildTask(request);
+        String taskId = task.getTaskId();
+        
+        // A client retry or coalesced payload resolves to the existing task
+        Optional<String> duplicateOf = deduplicator.claim(task);
+        if (duplicateOf.isPresent()) {
+            log.info("Submission resolved to existing task {}", duplicateOf.get());
+            return existingTaskResponse(duplicateOf.get(), task);
+        }
+        
+        try {
+            // Hand over to the queue backend inside the same transaction as the task row
+            transactionTemplate.executeWithoutResult(status -> {
+                taskRepository.save(task);
+                queueBackend.enqueue(List.of(task));
+            });
+        } catch (DataIntegrityViolationException e) {
+            deduplicator.release(task);
+            // The unique index caught a duplicate key Redis did not know about
+            Task existing = Optional.ofNullable(task.getIdempotencyKey())
+                .flatMap(taskRepository::findByIdempotencyKey)
+                .orElseThrow(() -> e);
+            deduplicator.remember(existing.getIdempotencyKey(), existing.getTaskId());
+            return buildTaskResponse(existing, estimateWaitTime(existing.getPriority()));
+        } catch (RuntimeException e) {
+            deduplicator.release(task);
+            throw e;
+        }
+        
+        // Cache task status and status counts in one round-trip
+        transitionScript.apply(submittedTransition(task));
+        metricsAggregator.recordSubmitted(task);
+        
+        log.info("Task submitted successfully: taskId={}, type={}, priority={}", 
+                 taskId, request.getTaskType(), request.getPriority());
+        
+        return buildTaskResponse(task, estimateWaitTime(task.getPriority()));
+    }
+    
+    /**
+     * Serves the task a duplicate submission resolved to. If the original is
+     * still being committed it is not readable yet, and its id is returned
+     * with the details of this request.
+     */
+    private TaskResponse existingTaskResponse(String taskId, Task duplicate) {
+        try {
+            return taskStatusCache.get(taskId);
+        } catch (IllegalArgumentException e) {
+            duplicate.setTaskId(taskId);
+            return buildTaskResponse(duplicate, estimateWaitTime(duplicate.getPriority()));
+        }
+    }
+    
+    /**
+     * Submits many tasks at once. Valid items and their queue entries are
+     * inserted with JDBC batches and cached in a single Redis pipeline; each
+     * item gets its own result so a bad entry doesn't fail the whole batch.
+     */
+    public BatchTaskResponse submitBatch(List<TaskRequest> requests) {
+        int maxBatchSize = properties.getSubmission().getMaxBatchSize();
+        if (requests.size() > maxBatchSize) {
+            throw new IllegalArgumentException(
+                "Batch size " + requests.size() + " exceeds limit of " + maxBatchSize
+            );
+        }
+        
+        BatchTaskResponse.ItemResult[] results = new BatchTaskResponse.ItemResult[requests.size()];
+        List<Task> accepted = new ArrayList<>();
+        List<Integer> acceptedIndexes = new ArrayList<>();
+        
+        // Validate everything up front
+        for (int i = 0; i < requests.size(); i++) {
+            String error = validate(requests.get(i));
+            if (error != null) {
+                results[i] = failedItem(i, error, null);
+            } else {
+                Task task = buildTask(requests.get(i));
+                Optional<String> duplicateOf = deduplicator.claim(task);
+                if (duplicateOf.isPresent()) {
+                    results[i] = BatchTaskResponse.ItemResult.builder()
+                        .index(i)
+                        .success(true)
+                        .task(existingTaskResponse(duplicateOf.get(), task))
+                        .build();
+                    continue;
+                }
+                accepted.add(task);
+                acceptedIndexes.add(i);
+            }
+        }
+        
+        // Persist in chunks, one transaction per chunk
+        List<Task> persisted = new ArrayList<>();
+        List<Integer> persistedIndexes = new ArrayList<>();
+        int chunkSize = Math.max(1, properties.getSubmission().getJdbcBatchSize());
+        for (int start = 0; start < accepted.size(); start += chunkSize) {
+            int end = Math.min(start + chunkSize, accepted.size());
+            List<Task> chunk = accepted.subList(start, end);
+            try {
+                // The unique index resolves keys Redis did not know about per item, as in submitTask
+                Map<String, Task> existing = new HashMap<>();
+                Set<String> inserted = transactionTemplate.execute(status -> {
+                    Set<String> ids = taskBatchRepository.insertAllSkippingDuplicates(chunk);
+                    queueBackend.enqueue(chunk.stream().filter(task -> ids.contains(task.getTaskId())).toList());
+                    List<String> duplicateKeys = chunk.stream()
+                        .filter(task -> !ids.contains(task.getTaskId()))
+                        .map(Task::getIdempotencyKey)
+                        .toList();
+                    if (!duplicateKeys.isEmpty()) {
+                        taskRepository.findByIdempotencyKeyIn(duplicateKeys)
+                            .forEach(task -> existing.put(task.getIdempotencyKey(), task));
+                    }
+                    return ids;
+                });
+                for (int i = start; i < end; i++) {
+                    Task task = accepted.get(i);
+                    int index = acceptedIndexes.get(i);
+                    if (inserted.contains(task.getTaskId())) {
+                        persisted.add(task);
+                        persistedIndexes.add(index);
+                        continue;
+                    }
+                    deduplicator.release(task);
+                    Task original = existing.get(task.getIdempotencyKey());
+                    if (original == null) {
+                        results[index] = failedItem(index, "Duplicate idempotency key", null);
+                        continue;
+                    }
+                    deduplicator.remember(original.getIdempotencyKey(), original.getTaskId());
+                    results[index] = BatchTaskResponse.ItemResult.builder()
+                        .index(index)
+                        .success(true)
+                        .task(buildTaskResponse(original, estimateWaitTime(original.getPriority())))
+                        .build();
+                }
+            } catch (RuntimeException e) {
+                log.error("Failed to persist batch chunk [{}, {}): {}", start, end, e.getMessage());
+                chunk.forEach(deduplicator::release);
+                for (int i = start; i < end; i++) {
+                    int index = acceptedIndexes.get(i);
+                    results[index] = failedItem(index, "Failed to persist task: " + e.getMessage(), null);
+                }
+            }
+        }
+        
+        transitionScript.applyAll(persisted.stream().map(this::submittedTransition).toList());
+        persisted.forEach(metricsAggregator::recordSubmitted);
+        
+        Map<Priority, String> waitTimes = new EnumMap<>(Priority.class);
+        for (int i = 0; i < persisted.size(); i++) {
+            Task task = persisted.get(i);
+            int index = persistedIndexes.get(i);
+            TaskResponse response = buildTaskResponse(task,
+                waitTimes.computeIfAbsent(task.getPriority(), this::estimateWaitTime));
+            results[index] = BatchTaskResponse.ItemResult.builder()
+                .index(index)
+                .success(true)
+                .task(response)
+                .build();
+        }
+        
+        // Duplicates resolved to an existing task count as submitted
+        int succeeded = (int) Arrays.stream(results).filter(BatchTaskResponse.ItemResult::getSuccess).count();
+        log.info("Batch submitted: {} requested, {} queued, {} duplicates",
+                 requests.size(), persisted.size(), succeeded - persisted.size());
+        
+        return BatchTaskResponse.builder()
+            .submitted(succeeded)
+            .failed(requests.size() - succeeded)
+            .results(List.of(results))
+            .build();
+    }
+    
+    /**
+     * Checks a request the way a batch item is checked, returning the error
+     * message or null if it is valid.
+     */
+    public String validate(TaskRequest request) {
+        if (request == null) {
+            return "Task request is required";
+        }
+        
+        Set<ConstraintViolation<TaskRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining(", "));
+        }
+        
+        if (!executorService.isTaskTypeSupported(request.getTaskType())) {
+            return "Unsupported task type: " + request.getTaskType();
+        }
+        return null;
+    }
+    
+    private TaskTransitionScript.Transition submittedTransition(Task task) {
+        return TaskTransitionScript.forTask(task, TaskStatus.PENDING)
+            .previousStatus(null)
+            .build();
+    }
+    
+    private BatchTaskResponse.ItemResult failedItem(int index, String error, TaskResponse task) {
+        return BatchTaskResponse.ItemResult.builder()
+            .index(index)
+            .success(false)
+            .task(task)
+            .error(error)
+            .build();
+    }
+    
+    public Task buildTask(TaskRequest request) {
         // Generate unique task ID
         String taskId = "task_" + UUID.randomUUID().toString().replace("-", "");
         
-        // Create and persist task
-        Task task = Task.builder()
+        return Task.builder()
             .taskId(taskId)
             .taskType(request.getTaskType())
             .priority(request.getPriority())
             .payload(request.getPayload())
             .status(TaskStatus.PENDING)
-            .maxRetries(request.getMaxRetries())
+            .maxRetries(request.getMaxRetries() != null
+                ? request.getMaxRetries()
+                : properties.getRetry().getMaxAttempts())
             .scheduledAt(request.getScheduledAt())
+            .idempotencyKey(request.getIdempotencyKey())
             .retryCount(0)
             .build();
-        
-        taskRepository.save(task);
-        
-        // Cache task status in Redis (TTL: 1 hour)
-        String redisKey = "task:status:" + taskId;
-        redisTemplate.opsForHash().put(redisKey, "status", TaskStatus.PENDING.name());
-        redisTemplate.opsForHash().put(redisKey, "taskType", task.getTaskType());
-        redisTemplate.opsForHash().put(redisKey, "priority", task.getPriority().name());
-        redisTemplate.expire(redisKey, 1, TimeUnit.HOURS);
-        
-        // Route to appropriate priority queue
-        String queueName = getQueueByPriority(request.getPriority());
-        rabbitTemplate.convertAndSend(queueName, task);
-        
-        // Update metrics
-        redisTemplate.opsForValue().increment("metrics:tasks_submitted");
-        redisTemplate.opsForValue().increment("metrics:tasks_" + request.getPriority().name().toLowerCase());
-        
-        // Update queue size
-        redisTemplate.opsForValue().increment("queue:size:" + request.getPriority().name().toLowerCase());
-        
-        log.info("Task submitted successfully: taskId={}, type={}, priority={}", 
-                 taskId, request.getTaskType(), request.getPriority());
-        
-        return buildTaskResponse(task);
     }
     
-    private String getQueueByPriority(Priority priority) {
-        return switch(priority) {
-            case HIGH -> RabbitMQConfig.HIGH_PRIORITY_QUEUE;
-            case MEDIUM -> RabbitMQConfig.MEDIUM_PRIORITY_QUEUE;
-            case LOW -> RabbitMQConfig.LOW_PRIORITY_QUEUE;
-        };
-    }
-    
-    private TaskResponse buildTaskResponse(Task task) {
+    // Package-private so the submission benchmarks can measure it directly
+    static TaskResponse buildTaskResponse(Task task, String estimatedWaitTime) {
         return TaskResponse.builder()
             .taskId(task.getTaskId())
             .taskType(task.getTaskType())
             .priority(task.getPriority())
             .status(task.getStatus())
             .createdAt(task.getCreatedAt())
-            .estimatedWaitTime(estimateWaitTime(task.getPriority()))
+            .estimatedWaitTime(estimatedWaitTime)
             .build();
     }
     
     private String estimateWaitTime(Priority priority) {
-        // Simple estimation based on queue size
-        String queueKey = "queue:size:" + priority.name().toLowerCase();
-        Long queueSize = (Long) redisTemplate.opsForValue().get(queueKey);
-        if (queueSize == null) queueSize = 0L;
-        
-        // Assume 2 seconds per task on average
-        long waitSeconds = queueSize * 2;
+        // Based on broker queue depth and the measured drain rate
+        Long waitMs = queueDepthProvider.getDepth(priority).getEstimatedWaitMs();
+        if (waitMs == null) {
+            return "unknown";
+        }
+        long waitSeconds = waitMs / 1000;
         if (waitSeconds < 60) {
             return waitSeconds + "s";
         } else {
@@ -112,19 +315,38 @@ public class TaskSubmissionService {
         }
     }
     
-    public TaskResponse getTaskStatus(String taskId) {
+    /**
+     * Cancels a task that has not finished. Workers drop queued messages for
+     * it, and the instance running it, if any, cancels its execution.
+     *
+     * @return false if the task already finished
+     */
+    public boolean cancelTask(String taskId) {
         Task task = taskRepository.findByTaskId(taskId)
             .orElseThrow(() -> new IllegalArgumentException("Task not found: " + taskId));
         
-        return TaskResponse.builder()
-            .taskId(task.getTaskId())
-            .taskType(task.getTaskType())
-            .priority(task.getPriority())
-            .status(task.getStatus())
-            .createdAt(task.getCreatedAt())
-            .completedAt(task.getCompletedAt())
-            .errorMessage(task.getErrorMessage())
-            .retryCount(task.getRetryCount())
-            .build();
+        // The row decides: a task that finished or was claimed away since the read stays as it is
+        LocalDateTime now = LocalDateTime.now();
+        AtomicReference<TaskStatus> previous = new AtomicReference<>();
+        task.setCompletedAt(now);
+        task.setStatus(TaskStatus.CANCELLED);
+        // Also cancels the tasks of its workflow that depend on it
+        boolean cancelled = workflowCoordinator.onTaskFailed(task, () -> {
+            previous.set(taskBatchRepository.cancel(taskId, now).orElse(null));
+            return previous.get() != null;
+        });
+        if (!cancelled) {
+            return false;
+        }
+        
+        transitionScript.apply(TaskTransitionScript.forTask(task, TaskStatus.CANCELLED)
+            .previousStatus(previous.get())
+            .build());
+        cancellationRegistry.cancel(taskId);
+        return true;
+    }
+    
+    public TaskResponse getTaskStatus(String taskId) {
+        return taskStatusCache.get(taskId);
     }
 }
@@ -0,0 +1,208 @@
+package com.taskqueue.service;
+
+import com.taskqueue.model.Task;
+import com.taskqueue.model.TaskStatus;
+import lombok.Builder;
+import lombok.RequiredArgsConstructor;
+import lombok.Singular;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import jakarta.annotation.PostConstruct;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies task state transitions to Redis through a Lua script, so the
+ * status hash and per-status counts for one transition are updated
+ * atomically in a single round-trip, and near caches on every instance are
+ * told to drop the task. Throughput counters and
+ * latencies live in {@link MetricsAggregator}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TaskTransitionScript {
+    
+    public static final Duration STATUS_TTL = Duration.ofHours(1);
+    public static final String STATUS_COUNTS_KEY = "metrics:status_counts";
+    // Set once the counts are seeded; until then the script keeps deltas for the seeder
+    public static final String STATUS_COUNTS_SEEDED_KEY = "metrics:status_counts_seeded";
+    public static final String STATUS_COUNTS_DELTAS_KEY = "metrics:status_counts_deltas";
+    // Carries the status key of every transition, for near-cache invalidation
+    public static final String STATUS_CHANGED_CHANNEL = "task:status:changed";
+    
+    private static final String STATUS_KEY_PREFIX = "task:status:";
+    
+    private static final RedisScript<Long> SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/task_transition.lua"), Long.class);
+    
+    private final StringRedisTemplate stringRedisTemplate;
+    
+    /**
+     * Loads the script into the Redis script cache before any listener
+     * starts, so the first pipelines do not all miss it.
+     */
+    @PostConstruct
+    public void preload() {
+        try {
+            log.info("Preloaded task transition script: {}", load());
+        } catch (RuntimeException e) {
+            log.warn("Could not preload task transition script: {}", e.getMessage());
+        }
+    }
+    
+    public void apply(Transition transition) {
+        stringRedisTemplate.execute(SCRIPT, transition.keys(), transition.args().toArray());
+    }
+    
+    /**
+     * Applies many transitions in one pipeline. Pipelined EVALSHA calls
+     * cannot fall back to EVAL, so if Redis lost the script (restart,
+     * failover, SCRIPT FLUSH) it is loaded again and the transitions that
+     * failed with NOSCRIPT are retried; the others already ran.
+     */
+    public void applyAll(List<Transition> transitions) {
+        if (transitions.isEmpty()) {
+            return;
+        }
+        try {
+            pipeline(transitions);
+        } catch (RedisPipelineException e) {
+            List<Object> results = e.getPipelineResult();
+            List<Transition> missed = new ArrayList<>();
+            for (int i = 0; i < results.size() && i < transitions.size(); i++) {
+                if (isNoScript(results.get(i))) {
+                    missed.add(transitions.get(i));
+                }
+            }
+            if (missed.isEmpty()) {
+                throw e;
+            }
+            log.info("Task transition script missing from Redis, reloading and retrying {} transitions", missed.size());
+            load();
+            pipeline(missed);
+        }
+    }
+    
+    private void pipeline(List<Transition> transitions) {
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            transitions.forEach(transition -> evalSha(connection, transition));
+            return null;
+        });
+    }
+    
+    private String load() {
+        return stringRedisTemplate.execute((RedisCallback<String>) connection ->
+            connection.scriptingCommands().scriptLoad(scriptBytes()));
+    }
+    
+    private static boolean isNoScript(Object result) {
+        for (Throwable t = result instanceof Throwable e ? e : null; t != null; t = t.getCause()) {
+            if (t.getMessage() != null && t.getMessage().contains("NOSCRIPT")) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private void evalSha(RedisConnection connection, Transition transition) {
+        List<String> keys = transition.keys();
+        List<String> args = transition.args();
+        byte[][] keysAndArgs = new byte[keys.size() + args.size()][];
+        int i = 0;
+        for (String key : keys) {
+            keysAndArgs[i++] = key.getBytes(StandardCharsets.UTF_8);
+        }
+        for (String arg : args) {
+            keysAndArgs[i++] = arg.getBytes(StandardCharsets.UTF_8);
+        }
+        connection.scriptingCommands().evalSha(SCRIPT.getSha1(), ReturnType.INTEGER, keys.size(), keysAndArgs);
+    }
+    
+    private byte[] scriptBytes() {
+        return SCRIPT.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+    }
+    
+    public static String statusKey(String taskId) {
+        return STATUS_KEY_PREFIX + taskId;
+    }
+    
+    public static String taskIdFromStatusKey(String statusKey) {
+        return statusKey.substring(STATUS_KEY_PREFIX.length());
+    }
+    
+    /**
+     * Starts a transition of {@code task} to {@code status} that rewrites
+     * every field the status endpoint serves, so the hash stays complete
+     * even if it expired since the previous transition. The task's current
+     * status is taken as the previous one.
+     */
+    public static Transition.TransitionBuilder forTask(Task task, TaskStatus status) {
+        return Transition.builder()
+            .taskId(task.getTaskId())
+            .taskType(task.getTaskType())
+            .status(status)
+            .previousStatus(task.getStatus())
+            .ttl(STATUS_TTL)
+            .field("taskType", task.getTaskType())
+            .field("priority", task.getPriority().name())
+            .field("createdAt", toString(task.getCreatedAt()))
+            .field("completedAt", toString(task.getCompletedAt()))
+            .field("retryCount", toString(task.getRetryCount()))
+            .field("errorMessage", task.getErrorMessage());
+    }
+    
+    private static String toString(Object value) {
+        return value != null ? value.toString() : null;
+    }
+    
+    public static String statusCountsKey(String taskType) {
+        return STATUS_COUNTS_KEY + ":" + taskType;
+    }
+    
+    @Value
+    @Builder
+    public static class Transition {
+        String taskId;
+        String taskType;
+        TaskStatus status;
+        // Status the task is leaving; null for newly submitted tasks
+        TaskStatus previousStatus;
+        Duration ttl;
+        @Singular
+        Map<String, String> fields;
+        
+        // Every key the script writes; Redis requires scripts to declare them
+        List<String> keys() {
+            return List.of(statusKey(taskId), STATUS_COUNTS_KEY, statusCountsKey(taskType),
+                STATUS_COUNTS_SEEDED_KEY, STATUS_COUNTS_DELTAS_KEY);
+        }
+        
+        List<String> args() {
+            List<String> args = new ArrayList<>(4 + fields.size() * 2);
+            args.add(status.name());
+            args.add(previousStatus != null ? previousStatus.name() : "");
+            args.add(taskType);
+            args.add(String.valueOf(ttl != null ? ttl.toSeconds() : 0));
+            fields.forEach((field, value) -> {
+                if (value != null) {
+                    args.add(field);
+                    args.add(value);
+                }
+            });
+            return args;
+        }
+    }
+}
@@ -1,122 +1,562 @@
 package com.taskqueue.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.Channel;
 import com.taskqueue.config.RabbitMQConfig;
+import com.taskqueue.executor.CancellationToken;
+import com.taskqueue.executor.TaskContext;
+import com.taskqueue.executor.TaskResult;
 import com.taskqueue.model.DeadLetterTask;
 import com.taskqueue.model.Task;
 import com.taskqueue.model.TaskStatus;
+import com.taskqueue.queue.QueueBackend;
 import com.taskqueue.repository.DeadLetterTaskRepository;
-import com.taskqueue.repository.TaskRepository;
+import com.taskqueue.repository.TaskBatchRepository;
 import com.taskqueue.websocket.TaskStatusBroadcaster;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.UUID;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class TaskWorkerService {
     
-    private final TaskRepository taskRepository;
     private final DeadLetterTaskRepository deadLetterTaskRepository;
     private final TaskExecutorService executorService;
     private final RedisTemplate<String, Object> redisTemplate;
-    private final RabbitTemplate rabbitTemplate;
     private final TaskStatusBroadcaster statusBroadcaster;
+    private final RetryScheduler retryScheduler;
+    private final TaskBatchRepository taskBatchRepository;
+    private final MessageConverter messageConverter;
+    private final VirtualThreadTaskDispatcher virtualThreadDispatcher;
+    private final FairTaskScheduler fairTaskScheduler;
+    private final TaskTransitionScript transitionScript;
+    private final ObjectMapper objectMapper;
+    private final MetricsAggregator metricsAggregator;
+    private final QueueBackend queueBackend;
+    private final ExecutionLimiter executionLimiter;
+    private final WorkerRegistry workerRegistry;
+    private final CancellationRegistry cancellationRegistry;
+    private final WorkflowCoordinator workflowCoordinator;
     
-    private final String workerId = "worker_" + UUID.randomUUID().toString().substring(0, 8);
+    // task-queue.worker.mode selects which listener set is started; none run
+    // unless the AMQP queue backend is active
+    private static final String AMQP_BACKEND = "'${task-queue.queue.backend:amqp}' == 'amqp'";
+    private static final String SINGLE_MODE = "#{" + AMQP_BACKEND + " && '${task-queue.worker.mode:single}' == 'single'}";
+    private static final String BATCH_MODE = "#{" + AMQP_BACKEND + " && '${task-queue.worker.mode:single}' == 'batch'}";
+    private static final String VIRTUAL_MODE = "#{" + AMQP_BACKEND + " && '${task-queue.worker.mode:single}' == 'virtual'}";
+    private static final String FAIR_MODE = "#{" + AMQP_BACKEND + " && '${task-queue.worker.mode:single}' == 'fair'}";
     
-    @RabbitListener(queues = RabbitMQConfig.HIGH_PRIORITY_QUEUE, concurrency = "5-10")
+    public String getWorkerId() {
+        return workerRegistry.getWorkerId();
+    }
+    
+    @RabbitListener(queues = RabbitMQConfig.HIGH_PRIORITY_QUEUE, concurrency = "5-10", autoStartup = SINGLE_MODE)
     public void processHighPriorityTask(Task task) {
-        processTask(task, "HIGH");
+        processTask(task, "HIGH").join();
     }
     
-    @RabbitListener(queues = RabbitMQConfig.MEDIUM_PRIORITY_QUEUE, concurrency = "3-5")
+    @RabbitListener(queues = RabbitMQConfig.MEDIUM_PRIORITY_QUEUE, concurrency = "3-5", autoStartup = SINGLE_MODE)
     public void processMediumPriorityTask(Task task) {
-        processTask(task, "MEDIUM");
+        processTask(task, "MEDIUM").join();
     }
     
-    @RabbitListener(queues = RabbitMQConfig.LOW_PRIORITY_QUEUE, concurrency = "1-3")
+    @RabbitListener(queues = RabbitMQConfig.LOW_PRIORITY_QUEUE, concurrency = "1-3", autoStartup = SINGLE_MODE)
     public void processLowPriorityTask(Task task) {
-        processTask(task, "LOW");
+        processTask(task, "LOW").join();
+    }
+    
+    @RabbitListener(queues = RabbitMQConfig.HIGH_PRIORITY_QUEUE, concurrency = "5-10", autoStartup = BATCH_MODE,
+                    containerFactory = RabbitMQConfig.BATCH_CONTAINER_FACTORY)
+    public void processHighPriorityBatch(List<Message> messages, Channel channel) {
+        processBatch(messages, channel, "HIGH");
+    }
+    
+    @RabbitListener(queues = RabbitMQConfig.MEDIUM_PRIORITY_QUEUE, concurrency = "3-5", autoStartup = BATCH_MODE,
+                    containerFactory = RabbitMQConfig.BATCH_CONTAINER_FACTORY)
+    public void processMediumPriorityBatch(List<Message> messages, Channel channel) {
+        processBatch(messages, channel, "MEDIUM");
+    }
+    
+    @RabbitListener(queues = RabbitMQConfig.LOW_PRIORITY_QUEUE, concurrency = "1-3", autoStartup = BATCH_MODE,
+                    containerFactory = RabbitMQConfig.BATCH_CONTAINER_FACTORY)
+    public void processLowPriorityBatch(List<Message> messages, Channel channel) {
+        processBatch(messages, channel, "LOW");
+    }
+    
+    /**
+     * Marks the task PROCESSING and starts it. Completion, retry and
+     * dead-lettering run in the execution future's callback, on whichever
+     * thread completes it; the returned future completes once that's done.
+     * A delivery whose row is no longer PENDING at the attempt it carries is
+     * dropped.
+     */
+    public CompletableFuture<Void> processTask(Task task, String priority) {
+        return processTask(task, priority, false);
     }
     
-    @Transactional
-    public void processTask(Task task, String priority) {
+    /**
+     * Starts a task whose row the Postgres claim already moved to
+     * PROCESSING for this worker.
+     */
+    public CompletableFuture<Void> processClaimedTask(Task task, String priority) {
+        return processTask(task, priority, true);
+    }
+    
+    private CompletableFuture<Void> processTask(Task task, String priority, boolean claimed) {
         long startTime = System.currentTimeMillis();
         String taskId = task.getTaskId();
+        // Every write of this delivery is fenced on the attempt it started
+        int attempt = task.getRetryCount() != null ? task.getRetryCount() : 0;
         
         log.info("Worker {} picked up task: {} from {} priority queue", 
-                 workerId, taskId, priority);
+                 getWorkerId(), taskId, priority);
+        
+        // Cancelled while queued; saves the claim, which would not match the CANCELLED row either
+        if (cancellationRegistry.isCancelled(taskId)) {
+            log.info("Dropping cancelled task {}", taskId);
+            return CompletableFuture.completedFuture(null);
+        }
         
+        ExecutionLimiter.Admission admission = executionLimiter.tryAdmit(task.getTaskType(), task.getTaskId());
+        if (!admission.isAdmitted()) {
+            deferTask(task, claimed, attempt, admission.getRetryAfterMs());
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        CancellationToken token = cancellationRegistry.register(taskId);
+        Map<String, Object> payload;
+        boolean started = claimed;
         try {
-            // Update queue size
-            redisTemplate.opsForValue().decrement("queue:size:" + priority.toLowerCase());
-            
             // Update task status to PROCESSING
-            updateTaskStatus(task, TaskStatus.PROCESSING);
+            TaskTransitionScript.Transition.TransitionBuilder processing = transition(task, TaskStatus.PROCESSING);
+            task.setStatus(TaskStatus.PROCESSING);
             task.setStartedAt(LocalDateTime.now());
-            task.setWorkerId(workerId);
-            taskRepository.save(task);
+            task.setWorkerId(getWorkerId());
+            task.setLeaseExpiresAt(workerRegistry.leaseDeadline());
+            if (!claimed && !taskBatchRepository.updateIfPending(task, attempt)) {
+                log.info("Dropping stale delivery of task {}", taskId);
+                admission.release();
+                cancellationRegistry.unregister(taskId, token);
+                return CompletableFuture.completedFuture(null);
+            }
+            started = true;
+            updateTaskStatus(task, processing);
+            metricsAggregator.recordStarted(task);
             
             // Broadcast status update
             statusBroadcaster.broadcastTaskUpdate(taskId, TaskStatus.PROCESSING);
+            payload = workflowCoordinator.inputPayload(task);
+            
+        } catch (Exception e) {
+            log.error("Task {} failed: {}", taskId, e.getMessage(), e);
+            admission.release();
+            cancellationRegistry.unregister(taskId, token);
+            if (!started) {
+                task.setStatus(TaskStatus.PENDING);
+            }
+            handleTaskFailure(task, started, attempt, e);
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        // Execute the actual task logic
+        workerRegistry.taskStarted();
+        return executorService.executeAsync(buildContext(task, payload, token))
+            .whenComplete((result, error) -> {
+                admission.release();
+                cancellationRegistry.unregister(taskId, token);
+                workerRegistry.taskFinished(error == null);
+            })
+            .toCompletableFuture()
+            .handle((result, error) -> {
+                try {
+                    if (error != null && token.getReason() instanceof CancellationException) {
+                        recordCancelled(task);
+                        return null;
+                    }
+                    if (error != null) {
+                        // A timeout fails the task with the token's reason, whatever the executor threw
+                        throw token.isCancelled() ? token.getReason() : TaskExecutorService.unwrap(error);
+                    }
+                    completeTask(task, attempt, result, startTime);
+                } catch (Exception e) {
+                    log.error("Task {} failed: {}", taskId, e.getMessage(), e);
+                    handleTaskFailure(task, true, attempt, e);
+                }
+                return (Void) null;
+            })
+            .exceptionally(e -> {
+                log.error("Failed to record outcome of task {}: {}", taskId, e.getMessage(), e);
+                return null;
+            });
+    }
+    
+    private void completeTask(Task task, int attempt, TaskResult result, long startTime) {
+        String taskId = task.getTaskId();
+        long duration = System.currentTimeMillis() - startTime;
+        
+        // Mark as COMPLETED
+        task.setCompletedAt(LocalDateTime.now());
+        TaskTransitionScript.Transition.TransitionBuilder transition = transition(task, TaskStatus.COMPLETED);
+        if (result != null && !result.getOutput().isEmpty()) {
+            transition.field("result", toJson(result.getOutput()));
+        }
+        task.setStatus(TaskStatus.COMPLETED);
+        boolean recorded = task.getWorkflowId() != null
+            // Saved together with the release of the task's children
+            ? workflowCoordinator.onTaskCompleted(task, getWorkerId(), attempt,
+                result != null ? result.getOutput() : Map.of())
+            : taskBatchRepository.updateIfProcessing(task, getWorkerId(), attempt);
+        if (!recorded) {
+            log.warn("Dropping outcome of task {}: attempt {} is no longer held by worker {}",
+                     taskId, attempt, getWorkerId());
+            return;
+        }
+        updateTaskStatus(task, transition);
+        
+        // Broadcast completion
+        statusBroadcaster.broadcastTaskUpdate(taskId, TaskStatus.COMPLETED);
+        
+        // Record metrics
+        metricsAggregator.recordCompleted(task, duration);
+        
+        log.info("Task {} completed successfully by worker {} in {}ms", 
+                 taskId, getWorkerId(), duration);
+    }
+    
+    /**
+     * Records a task cancelled while running. The cancel request already
+     * marked the row CANCELLED and moved the status counts; this rewrites
+     * the hash the worker's own PROCESSING transition may have overtaken.
+     */
+    private void recordCancelled(Task task) {
+        log.info("Task {} cancelled on worker {}", task.getTaskId(), getWorkerId());
+        task.setCompletedAt(LocalDateTime.now());
+        updateTaskStatus(task, transition(task, TaskStatus.CANCELLED).previousStatus(TaskStatus.CANCELLED));
+        statusBroadcaster.broadcastTaskUpdate(task.getTaskId(), TaskStatus.CANCELLED);
+    }
+    
+    private TaskContext buildContext(Task task, Map<String, Object> payload, CancellationToken token) {
+        String redisKey = TaskTransitionScript.statusKey(task.getTaskId());
+        return TaskContext.builder()
+            .taskId(task.getTaskId())
+            .taskType(task.getTaskType())
+            .priority(task.getPriority())
+            .payload(payload)
+            .attempt(task.getRetryCount() != null ? task.getRetryCount() : 0)
+            .progressListener(percent -> redisTemplate.opsForHash().put(redisKey, "progress", percent))
+            .cancellationToken(token)
+            .build();
+    }
+    
+    @RabbitListener(queues = RabbitMQConfig.HIGH_PRIORITY_QUEUE, autoStartup = VIRTUAL_MODE,
+                    containerFactory = RabbitMQConfig.HANDOFF_CONTAINER_FACTORY)
+    public void dispatchHighPriorityTask(Task task, Channel channel,
+                                         @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag) {
+        dispatchToVirtualThread(task, "HIGH", channel, deliveryTag);
+    }
+    
+    @RabbitListener(queues = RabbitMQConfig.MEDIUM_PRIORITY_QUEUE, autoStartup = VIRTUAL_MODE,
+                    containerFactory = RabbitMQConfig.HANDOFF_CONTAINER_FACTORY)
+    public void dispatchMediumPriorityTask(Task task, Channel channel,
+                                           @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag) {
+        dispatchToVirtualThread(task, "MEDIUM", channel, deliveryTag);
+    }
+    
+    @RabbitListener(queues = RabbitMQConfig.LOW_PRIORITY_QUEUE, autoStartup = VIRTUAL_MODE,
+                    containerFactory = RabbitMQConfig.HANDOFF_CONTAINER_FACTORY)
+    public void dispatchLowPriorityTask(Task task, Channel channel,
+                                        @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag) {
+        dispatchToVirtualThread(task, "LOW", channel, deliveryTag);
+    }
+    
+    private void dispatchToVirtualThread(Task task, String priority, Channel channel, long deliveryTag) {
+        // Over its type's in-flight limit the task waits in the dispatcher, its ack held
+        virtualThreadDispatcher.dispatch(task, () -> processTask(task, priority), () -> ack(task, channel, deliveryTag));
+    }
+    
+    @RabbitListener(queues = RabbitMQConfig.HIGH_PRIORITY_QUEUE, concurrency = "1", autoStartup = FAIR_MODE,
+                    containerFactory = RabbitMQConfig.FAIR_CONTAINER_FACTORY)
+    public void scheduleHighPriorityTask(Task task, Channel channel,
+                                         @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag) throws InterruptedException {
+        submitToFairScheduler(task, "HIGH", channel, deliveryTag);
+    }
+    
+    @RabbitListener(queues = RabbitMQConfig.MEDIUM_PRIORITY_QUEUE, concurrency = "1", autoStartup = FAIR_MODE,
+                    containerFactory = RabbitMQConfig.FAIR_CONTAINER_FACTORY)
+    public void scheduleMediumPriorityTask(Task task, Channel channel,
+                                           @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag) throws InterruptedException {
+        submitToFairScheduler(task, "MEDIUM", channel, deliveryTag);
+    }
+    
+    @RabbitListener(queues = RabbitMQConfig.LOW_PRIORITY_QUEUE, concurrency = "1", autoStartup = FAIR_MODE,
+                    containerFactory = RabbitMQConfig.FAIR_CONTAINER_FACTORY)
+    public void scheduleLowPriorityTask(Task task, Channel channel,
+                                        @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag) throws InterruptedException {
+        submitToFairScheduler(task, "LOW", channel, deliveryTag);
+    }
+    
+    private void submitToFairScheduler(Task task, String priority, Channel channel, long deliveryTag)
+            throws InterruptedException {
+        // Blocks the consumer while this priority's local lane is full
+        fairTaskScheduler.submit(task, () -> processTask(task, priority), () -> ack(task, channel, deliveryTag));
+    }
+    
+    private void ack(Task task, Channel channel, long deliveryTag) {
+        try {
+            channel.basicAck(deliveryTag, false);
+        } catch (IOException e) {
+            log.error("Failed to ack task {}: {}", task.getTaskId(), e.getMessage());
+        }
+    }
+    
+    /**
+     * Runs a consumer batch task by task, but writes the PROCESSING and final
+     * transitions with one JDBC batch and one Redis pipeline each, then acks
+     * the whole batch at once. If the bookkeeping itself fails, deliveries
+     * already executed or dropped are acked one by one and only the rest are
+     * nacked and redelivered.
+     */
+    public void processBatch(List<Message> messages, Channel channel, String priority) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        long lastDeliveryTag = messages.get(messages.size() - 1).getMessageProperties().getDeliveryTag();
+        Map<Task, Long> deliveryTags = new IdentityHashMap<>();
+        // Delivery tags that must not be redelivered: executed or dropped
+        List<Long> settled = new ArrayList<>(messages.size());
+        
+        try {
+            List<Task> tasks = new ArrayList<>(messages.size());
+            for (Message message : messages) {
+                Task task = (Task) messageConverter.fromMessage(message);
+                tasks.add(task);
+                deliveryTags.put(task, message.getMessageProperties().getDeliveryTag());
+            }
+            List<Task> cancelled = tasks.stream().filter(task -> cancellationRegistry.isCancelled(task.getTaskId())).toList();
+            if (!cancelled.isEmpty()) {
+                tasks.removeAll(cancelled);
+                cancelled.forEach(task -> settled.add(deliveryTags.get(task)));
+                log.info("Dropped {} cancelled tasks from batch", cancelled.size());
+            }
+            // Workflow tasks take the single-task path, which returns their output for their children
+            List<Task> workflowTasks = tasks.stream().filter(task -> task.getWorkflowId() != null).toList();
+            tasks.removeAll(workflowTasks);
+            for (Task task : workflowTasks) {
+                processTask(task, priority).join();
+                settled.add(deliveryTags.get(task));
+            }
+            if (tasks.isEmpty()) {
+                channel.basicAck(lastDeliveryTag, true);
+                return;
+            }
             
-            // Execute the actual task logic
-            executorService.execute(task.getTaskType(), task.getPayload());
+            log.info("Worker {} picked up batch of {} tasks from {} priority queue", 
+                     getWorkerId(), tasks.size(), priority);
             
-            // Mark as COMPLETED
-            updateTaskStatus(task, TaskStatus.COMPLETED);
-            task.setCompletedAt(LocalDateTime.now());
-            taskRepository.save(task);
+            // Transitions are built before the status changes so they carry the previous status
+            List<TaskTransitionScript.Transition> processingTransitions = tasks.stream()
+                .map(task -> transition(task, TaskStatus.PROCESSING).build())
+                .toList();
+            LocalDateTime startedAt = LocalDateTime.now();
+            LocalDateTime leaseExpiresAt = workerRegistry.leaseDeadline();
+            tasks.forEach(task -> {
+                task.setStatus(TaskStatus.PROCESSING);
+                task.setStartedAt(startedAt);
+                task.setWorkerId(getWorkerId());
+                task.setLeaseExpiresAt(leaseExpiresAt);
+            });
+            // Only deliveries whose row was still PENDING at their attempt run
+            boolean[] claimed = taskBatchRepository.updateAllIfPending(tasks);
+            List<Task> running = new ArrayList<>(tasks.size());
+            List<TaskTransitionScript.Transition> runningTransitions = new ArrayList<>(tasks.size());
+            for (int i = 0; i < tasks.size(); i++) {
+                if (claimed[i]) {
+                    running.add(tasks.get(i));
+                    runningTransitions.add(processingTransitions.get(i));
+                } else {
+                    settled.add(deliveryTags.get(tasks.get(i)));
+                }
+            }
+            if (running.size() < tasks.size()) {
+                log.info("Dropped {} stale deliveries from batch", tasks.size() - running.size());
+            }
+            transitionScript.applyAll(runningTransitions);
+            running.forEach(metricsAggregator::recordStarted);
+            running.forEach(task -> statusBroadcaster.broadcastTaskUpdate(task.getTaskId(), TaskStatus.PROCESSING));
             
-            // Broadcast completion
-            statusBroadcaster.broadcastTaskUpdate(taskId, TaskStatus.COMPLETED);
+            List<Task> completed = new ArrayList<>(running.size());
+            List<TaskTransitionScript.Transition> completedTransitions = new ArrayList<>(running.size());
+            Map<Task, Long> durations = new LinkedHashMap<>();
+            Map<Task, Exception> failed = new LinkedHashMap<>();
+            Map<Task, Long> deferred = new LinkedHashMap<>();
+            List<Task> cancelledWhileRunning = new ArrayList<>();
+            for (Task task : running) {
+                // From here on the outcome is recorded, retried or left to the lease, never redelivered
+                settled.add(deliveryTags.get(task));
+                ExecutionLimiter.Admission admission = executionLimiter.tryAdmit(task.getTaskType(), task.getTaskId());
+                if (!admission.isAdmitted()) {
+                    deferred.put(task, admission.getRetryAfterMs());
+                    continue;
+                }
+                long startTime = System.currentTimeMillis();
+                boolean succeeded = false;
+                // Same context as processTask: cancellable, timed out and able to report progress
+                CancellationToken token = cancellationRegistry.register(task.getTaskId());
+                workerRegistry.taskStarted();
+                try {
+                    TaskResult result = executorService.executeAsync(buildContext(task, task.getPayload(), token))
+                        .toCompletableFuture()
+                        .join();
+                    task.setCompletedAt(LocalDateTime.now());
+                    TaskTransitionScript.Transition.TransitionBuilder completedTransition =
+                        transition(task, TaskStatus.COMPLETED);
+                    if (result != null && !result.getOutput().isEmpty()) {
+                        completedTransition.field("result", toJson(result.getOutput()));
+                    }
+                    completedTransitions.add(completedTransition.build());
+                    task.setStatus(TaskStatus.COMPLETED);
+                    completed.add(task);
+                    durations.put(task, System.currentTimeMillis() - startTime);
+                    succeeded = true;
+                } catch (RuntimeException e) {
+                    if (token.getReason() instanceof CancellationException) {
+                        cancelledWhileRunning.add(task);
+                    } else {
+                        // A timeout fails the task with the token's reason, whatever the executor threw
+                        Exception error = token.isCancelled() ? token.getReason() : TaskExecutorService.unwrap(e);
+                        log.error("Task {} failed: {}", task.getTaskId(), error.getMessage(), error);
+                        failed.put(task, error);
+                    }
+                } finally {
+                    cancellationRegistry.unregister(task.getTaskId(), token);
+                    admission.release();
+                    workerRegistry.taskFinished(succeeded);
+                }
+            }
             
-            // Record metrics
-            long duration = System.currentTimeMillis() - startTime;
-            recordSuccessMetrics(task, duration);
+            int recorded = 0;
+            if (!completed.isEmpty()) {
+                boolean[] written = taskBatchRepository.updateAllIfProcessing(completed, getWorkerId());
+                List<TaskTransitionScript.Transition> recordedTransitions = new ArrayList<>(completed.size());
+                for (int i = 0; i < completed.size(); i++) {
+                    Task task = completed.get(i);
+                    if (!written[i]) {
+                        log.warn("Dropping outcome of task {}: no longer held by worker {}", task.getTaskId(), getWorkerId());
+                        continue;
+                    }
+                    recordedTransitions.add(completedTransitions.get(i));
+                    metricsAggregator.recordCompleted(task, durations.get(task));
+                    statusBroadcaster.broadcastTaskUpdate(task.getTaskId(), TaskStatus.COMPLETED);
+                    recorded++;
+                }
+                transitionScript.applyAll(recordedTransitions);
+            }
+            
+            // Failures are the uncommon path and go through the regular retry/DLQ logic
+            failed.forEach((task, e) -> handleTaskFailure(task, true, task.getRetryCount(), e));
+            deferred.forEach((task, delayMs) -> deferTask(task, true, task.getRetryCount(), delayMs));
+            cancelledWhileRunning.forEach(this::recordCancelled);
             
-            log.info("Task {} completed successfully by worker {} in {}ms", 
-                     taskId, workerId, duration);
+            channel.basicAck(lastDeliveryTag, true);
+            log.info("Worker {} finished batch: {} completed, {} failed, {} deferred, {} cancelled", 
+                     getWorkerId(), recorded, failed.size(), deferred.size(), cancelledWhileRunning.size());
             
         } catch (Exception e) {
-            log.error("Task {} failed: {}", taskId, e.getMessage(), e);
-            handleTaskFailure(task, e, priority);
+            log.error("Batch bookkeeping failed, requeueing {} of {} messages: {}",
+                      messages.size() - settled.size(), messages.size(), e.getMessage(), e);
+            try {
+                for (Message message : messages) {
+                    long deliveryTag = message.getMessageProperties().getDeliveryTag();
+                    if (settled.contains(deliveryTag)) {
+                        channel.basicAck(deliveryTag, false);
+                    } else {
+                        channel.basicNack(deliveryTag, false, true);
+                    }
+                }
+            } catch (IOException nackError) {
+                log.error("Failed to settle batch: {}", nackError.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Puts a task that hit its type's bulkhead or rate limit back on the
+     * queue after {@code delayMs}. Unlike a retry this does not count as an
+     * attempt.
+     */
+    private void deferTask(Task task, boolean started, int attempt, long delayMs) {
+        log.debug("Deferring task {} by {}ms", task.getTaskId(), delayMs);
+        boolean persisted = false;
+        try {
+            task.setScheduledAt(LocalDateTime.now().plus(Duration.ofMillis(delayMs)));
+            // Already handed to the broker once; keeps the scheduled dispatcher off it
+            task.setDispatchedAt(LocalDateTime.now());
+            TaskTransitionScript.Transition.TransitionBuilder pending =
+                task.getStatus() != TaskStatus.PENDING ? transition(task, TaskStatus.PENDING) : null;
+            task.setStatus(TaskStatus.PENDING);
+            if (!persist(task, started, attempt)) {
+                log.info("Dropping stale delivery of task {}", task.getTaskId());
+                return;
+            }
+            persisted = true;
+            if (pending != null) {
+                updateTaskStatus(task, pending);
+                statusBroadcaster.broadcastTaskUpdate(task.getTaskId(), TaskStatus.PENDING);
+            }
+            queueBackend.scheduleRetry(task, delayMs);
+        } catch (Exception e) {
+            log.error("Failed to defer task {}: {}", task.getTaskId(), e.getMessage(), e);
+            handleTaskFailure(task, started && !persisted, attempt, e);
         }
     }
     
-    private void handleTaskFailure(Task task, Exception e, String priority) {
-        task.setRetryCount(task.getRetryCount() + 1);
+    /**
+     * Retries the task or, once out of attempts, fails it into the DLQ.
+     * {@code started} and {@code attempt} say which row this delivery may
+     * still write: the PENDING one it was delivered for, or the PROCESSING
+     * one it started. If the row moved on, the outcome is dropped.
+     */
+    private void handleTaskFailure(Task task, boolean started, int attempt, Exception e) {
+        task.setRetryCount(attempt + 1);
         task.setErrorMessage(e.getMessage());
         
         if (task.getRetryCount() < task.getMaxRetries()) {
-            // Retry with exponential backoff
-            log.info("Retrying task {} (attempt {}/{})", 
-                     task.getTaskId(), task.getRetryCount() + 1, task.getMaxRetries());
-            
-            updateTaskStatus(task, TaskStatus.PENDING);
-            taskRepository.save(task);
+            // Park the task in the retry schedule; the consumer is freed immediately
+            long delayMs = retryScheduler.computeDelay(task.getRetryCount());
+            log.info("Retrying task {} (attempt {}/{}) in {}ms", 
+                     task.getTaskId(), task.getRetryCount() + 1, task.getMaxRetries(), delayMs);
             
-            // Requeue task with delay
-            String queueName = getQueueByPriority(priority);
-            
-            // Calculate backoff delay (2^retryCount seconds)
-            long delayMs = (long) Math.pow(2, task.getRetryCount()) * 1000;
-            
-            try {
-                Thread.sleep(delayMs);
-            } catch (InterruptedException ie) {
-                Thread.currentThread().interrupt();
+            task.setScheduledAt(LocalDateTime.now().plus(Duration.ofMillis(delayMs)));
+            TaskTransitionScript.Transition.TransitionBuilder pending = transition(task, TaskStatus.PENDING);
+            task.setStatus(TaskStatus.PENDING);
+            if (!persist(task, started, attempt)) {
+                log.warn("Dropping failure of task {}: attempt {} was taken over", task.getTaskId(), attempt);
+                return;
             }
+            updateTaskStatus(task, pending);
             
-            rabbitTemplate.convertAndSend(queueName, task);
+            queueBackend.scheduleRetry(task, delayMs);
+            metricsAggregator.recordRetried(task);
             
             // Broadcast retry status
             statusBroadcaster.broadcastTaskUpdate(task.getTaskId(), TaskStatus.PENDING);
@@ -126,9 +566,15 @@ public class TaskWorkerService {
             log.error("Task {} failed after {} attempts, moving to DLQ", 
                       task.getTaskId(), task.getMaxRetries());
             
-            updateTaskStatus(task, TaskStatus.FAILED);
             task.setCompletedAt(LocalDateTime.now());
-            taskRepository.save(task);
+            TaskTransitionScript.Transition.TransitionBuilder failed = transition(task, TaskStatus.FAILED);
+            task.setStatus(TaskStatus.FAILED);
+            // A workflow counts the failure in the transaction that records it
+            if (!workflowCoordinator.onTaskFailed(task, () -> persist(task, started, attempt))) {
+                log.warn("Dropping failure of task {}: attempt {} was taken over", task.getTaskId(), attempt);
+                return;
+            }
+            updateTaskStatus(task, failed);
             
             // Save to DLQ table
             moveToDeadLetterQueue(task, e);
@@ -137,19 +583,43 @@ public class TaskWorkerService {
             statusBroadcaster.broadcastTaskUpdate(task.getTaskId(), TaskStatus.FAILED);
             
             // Record failure metrics
-            recordFailureMetrics(task);
+            metricsAggregator.recordFailed(task);
         }
     }
     
-    private void updateTaskStatus(Task task, TaskStatus status) {
-        task.setStatus(status);
-        
-        // Update Redis cache
-        String redisKey = "task:status:" + task.getTaskId();
-        redisTemplate.opsForHash().put(redisKey, "status", status.name());
+    /**
+     * Writes the task's row if it is still where this delivery left it:
+     * PENDING at the delivered attempt before the task started, PROCESSING
+     * on this worker at that attempt after.
+     */
+    private boolean persist(Task task, boolean started, int attempt) {
+        return started
+            ? taskBatchRepository.updateIfProcessing(task, getWorkerId(), attempt)
+            : taskBatchRepository.updateIfPending(task, attempt);
+    }
+    
+    private void updateTaskStatus(Task task, TaskTransitionScript.Transition.TransitionBuilder transition) {
+        TaskTransitionScript.Transition built = transition.build();
+        task.setStatus(built.getStatus());
         
+        // Update Redis cache and status counts atomically
+        transitionScript.apply(built);
+    }
+    
+    private TaskTransitionScript.Transition.TransitionBuilder transition(Task task, TaskStatus status) {
+        TaskTransitionScript.Transition.TransitionBuilder builder = TaskTransitionScript.forTask(task, status);
         if (status == TaskStatus.PROCESSING) {
-            redisTemplate.opsForHash().put(redisKey, "workerId", workerId);
+            builder.field("workerId", getWorkerId());
+        }
+        return builder;
+    }
+    
+    private String toJson(Map<String, Object> output) {
+        try {
+            return objectMapper.writeValueAsString(output);
+        } catch (JsonProcessingException e) {
+            log.warn("Task output is not serializable: {}", e.getMessage());
+            return null;
         }
     }
     
@@ -163,37 +633,5 @@ public class TaskWorkerService {
             .build();
         
         deadLetterTaskRepository.save(dlqTask);
-        
-        // Increment failed tasks metric
-        redisTemplate.opsForValue().increment("metrics:tasks_failed");
-    }
-    
-    private void recordSuccessMetrics(Task task, long durationMs) {
-        redisTemplate.opsForValue().increment("metrics:tasks_completed");
-        
-        // Update average processing time
-        String avgKey = "metrics:avg_processing_time";
-        Double currentAvg = (Double) redisTemplate.opsForValue().get(avgKey);
-        Long completedCount = (Long) redisTemplate.opsForValue().get("metrics:tasks_completed");
-        
-        if (currentAvg == null) currentAvg = 0.0;
-        if (completedCount == null) completedCount = 1L;
-        
-        double newAvg = ((currentAvg * (completedCount - 1)) + durationMs) / completedCount;
-        redisTemplate.opsForValue().set(avgKey, newAvg);
-    }
-    
-    private void recordFailureMetrics(Task task) {
-        redisTemplate.opsForValue().increment("metrics:tasks_failed");
-        redisTemplate.opsForValue().increment("metrics:tasks_failed_" + task.getTaskType());
-    }
-    
-    private String getQueueByPriority(String priority) {
-        return switch(priority) {
-            case "HIGH" -> RabbitMQConfig.HIGH_PRIORITY_QUEUE;
-            case "MEDIUM" -> RabbitMQConfig.MEDIUM_PRIORITY_QUEUE;
-            case "LOW" -> RabbitMQConfig.LOW_PRIORITY_QUEUE;
-            default -> RabbitMQConfig.MEDIUM_PRIORITY_QUEUE;
-        };
     }
 }
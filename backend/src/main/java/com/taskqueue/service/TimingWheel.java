@@ -0,0 +1,82 @@
+package com.taskqueue.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Hashed timing wheel. Items are bucketed by due tick, so adding is O(1) and
+ * advancing only looks at the buckets that elapsed. Entries further out than
+ * one rotation share a bucket with nearer ones and stay there until their
+ * absolute tick is reached. Not thread-safe on its own; callers synchronize.
+ */
+class TimingWheel<T> {
+    
+    private final long tickMs;
+    private final List<List<Entry<T>>> buckets;
+    private final Set<T> members = new HashSet<>();
+    private long currentTick;
+    
+    TimingWheel(long tickMs, int wheelSize, long startMillis) {
+        this.tickMs = tickMs;
+        this.buckets = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        this.currentTick = startMillis / tickMs;
+    }
+    
+    /**
+     * @return false if the item is already in the wheel
+     */
+    boolean add(T item, long dueAtMillis) {
+        if (!members.add(item)) {
+            return false;
+        }
+        // Overdue items go into the current bucket and come out on the next advance
+        long tick = Math.max(dueAtMillis / tickMs, currentTick);
+        bucketFor(tick).add(new Entry<>(item, tick));
+        return true;
+    }
+    
+    /**
+     * Removes and returns every item due at or before {@code nowMillis}.
+     */
+    List<T> advance(long nowMillis) {
+        long targetTick = nowMillis / tickMs;
+        List<T> due = new ArrayList<>();
+        // After a long pause one pass over all buckets is enough
+        long scans = Math.min(targetTick - currentTick + 1, buckets.size());
+        for (long i = 0; i < scans; i++) {
+            Iterator<Entry<T>> entries = bucketFor(currentTick + i).iterator();
+            while (entries.hasNext()) {
+                Entry<T> entry = entries.next();
+                if (entry.tick() <= targetTick) {
+                    entries.remove();
+                    members.remove(entry.item());
+                    due.add(entry.item());
+                }
+            }
+        }
+        currentTick = Math.max(currentTick, targetTick + 1);
+        return due;
+    }
+    
+    int size() {
+        return members.size();
+    }
+    
+    void clear() {
+        buckets.forEach(List::clear);
+        members.clear();
+    }
+    
+    private List<Entry<T>> bucketFor(long tick) {
+        return buckets.get((int) Math.floorMod(tick, (long) buckets.size()));
+    }
+    
+    private record Entry<T>(T item, long tick) {
+    }
+}
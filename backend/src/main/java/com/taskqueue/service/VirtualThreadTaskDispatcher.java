@@ -0,0 +1,138 @@
+package com.taskqueue.service;
+
+import com.taskqueue.config.TaskQueueProperties;
+import com.taskqueue.model.Task;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Hands tasks off from the AMQP consumer thread to a virtual thread per
+ * task. Each task type has an in-flight limit; a task over it is parked
+ * here, unacked, and started when a task of its type finishes. The consumer
+ * thread never blocks, so other types keep flowing, while parked deliveries
+ * keep occupying the prefetch window: once it is full of them the broker
+ * stops delivering.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class VirtualThreadTaskDispatcher {
+    
+    private final TaskQueueProperties properties;
+    
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, TypeGate> gates = new ConcurrentHashMap<>();
+    
+    /**
+     * Starts {@code work} on a virtual thread, right away if the task type
+     * is under its in-flight limit, otherwise once a task of the type
+     * finishes. {@code onDone} (typically the message ack) is called when
+     * the stage returned by {@code work} completes.
+     */
+    public void dispatch(Task task, Supplier<CompletionStage<?>> work, Runnable onDone) {
+        TypeGate gate = gates.computeIfAbsent(task.getTaskType(), type -> new TypeGate(inFlightLimit(type)));
+        Dispatch dispatch = new Dispatch(task, work, onDone);
+        if (gate.admitOrPark(dispatch)) {
+            start(gate, dispatch);
+        }
+    }
+    
+    public int getInFlight(String taskType) {
+        TypeGate gate = gates.get(taskType);
+        return gate == null ? 0 : gate.inFlight();
+    }
+    
+    public int getParked(String taskType) {
+        TypeGate gate = gates.get(taskType);
+        return gate == null ? 0 : gate.parked();
+    }
+    
+    private void start(TypeGate gate, Dispatch dispatch) {
+        Runnable finish = () -> {
+            dispatch.onDone().run();
+            // The finished task's slot passes straight to the oldest parked one
+            Dispatch next = gate.releaseOrHandOver();
+            if (next != null) {
+                start(gate, next);
+            }
+        };
+        
+        try {
+            executor.execute(() -> {
+                try {
+                    dispatch.work().get().whenComplete((result, error) -> finish.run());
+                } catch (RuntimeException e) {
+                    log.error("Failed to start task {}: {}", dispatch.task().getTaskId(), e.getMessage(), e);
+                    finish.run();
+                }
+            });
+        } catch (RuntimeException e) {
+            // Executor closed on shutdown; the unacked delivery is redelivered elsewhere
+            log.warn("Could not start task {}: {}", dispatch.task().getTaskId(), e.getMessage());
+            gate.releaseOrHandOver();
+        }
+    }
+    
+    private int inFlightLimit(String taskType) {
+        TaskQueueProperties.Virtual virtual = properties.getWorker().getVirtual();
+        return virtual.getInFlightLimits().getOrDefault(taskType, virtual.getDefaultInFlightLimit());
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        log.info("Waiting for in-flight virtual-thread tasks to finish");
+        executor.close();
+    }
+    
+    private record Dispatch(Task task, Supplier<CompletionStage<?>> work, Runnable onDone) {
+    }
+    
+    // In-flight count and parked deliveries of one task type
+    private static final class TypeGate {
+        private final int limit;
+        private final Queue<Dispatch> parked = new ArrayDeque<>();
+        private int inFlight;
+        
+        TypeGate(int limit) {
+            this.limit = limit;
+        }
+        
+        // True if the dispatch may start now, false if it was parked
+        synchronized boolean admitOrPark(Dispatch dispatch) {
+            if (inFlight < limit) {
+                inFlight++;
+                return true;
+            }
+            parked.add(dispatch);
+            return false;
+        }
+        
+        // Frees a slot, or hands it to the next parked dispatch and returns that
+        synchronized Dispatch releaseOrHandOver() {
+            Dispatch next = parked.poll();
+            if (next == null) {
+                inFlight--;
+            }
+            return next;
+        }
+        
+        synchronized int inFlight() {
+            return inFlight;
+        }
+        
+        synchronized int parked() {
+            return parked.size();
+        }
+    }
+}
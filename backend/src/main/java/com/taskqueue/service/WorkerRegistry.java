@@ -0,0 +1,185 @@
+package com.taskqueue.service;
+
+import com.taskqueue.config.TaskQueueProperties;
+import com.taskqueue.dto.WorkerInfo;
+import com.taskqueue.repository.TaskBatchRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registers this instance's worker in Redis under a heartbeat lease and
+ * keeps the leases of the tasks it is running alive. When the instance goes
+ * away its entry expires, and once its task leases lapse the
+ * {@link OrphanTaskReaper} puts those tasks back on the queue.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WorkerRegistry {
+    
+    // Worker ids scored by lease expiry (epoch ms), so expired entries can be pruned by range
+    private static final String WORKERS_KEY = "workers:live";
+    private static final String WORKER_KEY_PREFIX = "worker:";
+    
+    private final StringRedisTemplate stringRedisTemplate;
+    private final TaskBatchRepository taskBatchRepository;
+    private final TaskQueueProperties properties;
+    
+    @Getter
+    private final String workerId = "worker_" + UUID.randomUUID().toString().substring(0, 8);
+    private final String host = hostName();
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    
+    // Own thread, so slow @Scheduled jobs on the shared scheduler cannot delay lease renewal
+    private final ScheduledExecutorService heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(
+        Thread.ofPlatform().name("worker-heartbeat").daemon().factory());
+    
+    // Only touched by the heartbeat
+    private long completedAtLastHeartbeat;
+    private long lastHeartbeatNanos = System.nanoTime();
+    
+    public void taskStarted() {
+        inFlight.incrementAndGet();
+    }
+    
+    public void taskFinished(boolean succeeded) {
+        inFlight.decrementAndGet();
+        (succeeded ? completed : failed).increment();
+    }
+    
+    /**
+     * Lease deadline for a task this worker starts now.
+     */
+    public LocalDateTime leaseDeadline() {
+        return LocalDateTime.now().plus(Duration.ofMillis(properties.getWorker().getLease().getTtl()));
+    }
+    
+    @PostConstruct
+    public void start() {
+        long interval = properties.getWorker().getLease().getHeartbeatInterval();
+        heartbeatExecutor.scheduleWithFixedDelay(this::heartbeat, 0, interval, TimeUnit.MILLISECONDS);
+    }
+    
+    public void heartbeat() {
+        LocalDateTime leaseExpiresAt = leaseDeadline();
+        try {
+            taskBatchRepository.renewLeases(workerId, leaseExpiresAt);
+        } catch (RuntimeException e) {
+            log.warn("Could not renew task leases of worker {}: {}", workerId, e.getMessage());
+        }
+        
+        long now = System.nanoTime();
+        long completedNow = completed.sum();
+        double throughput = (completedNow - completedAtLastHeartbeat) * 1e9 / Math.max(now - lastHeartbeatNanos, 1);
+        completedAtLastHeartbeat = completedNow;
+        lastHeartbeatNanos = now;
+        
+        long ttl = properties.getWorker().getLease().getTtl();
+        String key = workerKey(workerId);
+        try {
+            stringRedisTemplate.opsForHash().putAll(key, Map.of(
+                "host", host,
+                "startedAt", startedAt.toString(),
+                "heartbeatAt", LocalDateTime.now().toString(),
+                "leaseExpiresAt", leaseExpiresAt.toString(),
+                "inFlight", String.valueOf(inFlight.get()),
+                "completed", String.valueOf(completedNow),
+                "failed", String.valueOf(failed.sum()),
+                "throughput", String.valueOf(Math.round(throughput * 100) / 100.0)));
+            stringRedisTemplate.expire(key, ttl, TimeUnit.MILLISECONDS);
+            stringRedisTemplate.opsForZSet().add(WORKERS_KEY, workerId, System.currentTimeMillis() + ttl);
+        } catch (RuntimeException e) {
+            log.warn("Worker {} heartbeat failed: {}", workerId, e.getMessage());
+        }
+    }
+    
+    /**
+     * Workers whose lease has not expired, dropping expired ones from the
+     * registry on the way.
+     */
+    public List<WorkerInfo> getLiveWorkers() {
+        long now = System.currentTimeMillis();
+        stringRedisTemplate.opsForZSet().removeRangeByScore(WORKERS_KEY, Double.NEGATIVE_INFINITY, now);
+        Set<ZSetOperations.TypedTuple<String>> live =
+            stringRedisTemplate.opsForZSet().rangeByScoreWithScores(WORKERS_KEY, now, Double.POSITIVE_INFINITY);
+        if (live == null) {
+            return List.of();
+        }
+        
+        List<WorkerInfo> workers = new ArrayList<>(live.size());
+        for (ZSetOperations.TypedTuple<String> entry : live) {
+            Map<Object, Object> fields = stringRedisTemplate.opsForHash().entries(workerKey(entry.getValue()));
+            if (fields.isEmpty()) {
+                continue;
+            }
+            workers.add(WorkerInfo.builder()
+                .workerId(entry.getValue())
+                .host((String) fields.get("host"))
+                .startedAt(parseTime(fields.get("startedAt")))
+                .lastHeartbeat(parseTime(fields.get("heartbeatAt")))
+                .leaseExpiresAt(parseTime(fields.get("leaseExpiresAt")))
+                .inFlight(Integer.parseInt((String) fields.getOrDefault("inFlight", "0")))
+                .completed(Long.parseLong((String) fields.getOrDefault("completed", "0")))
+                .failed(Long.parseLong((String) fields.getOrDefault("failed", "0")))
+                .throughput(Double.parseDouble((String) fields.getOrDefault("throughput", "0")))
+                .build());
+        }
+        return workers;
+    }
+    
+    /**
+     * Leaves the registry on shutdown. Tasks still running keep their lease
+     * until it lapses, so anything not finished by then is recovered.
+     */
+    @PreDestroy
+    public void deregister() {
+        heartbeatExecutor.shutdownNow();
+        try {
+            stringRedisTemplate.opsForZSet().remove(WORKERS_KEY, workerId);
+            stringRedisTemplate.delete(workerKey(workerId));
+        } catch (RuntimeException e) {
+            log.warn("Could not deregister worker {}: {}", workerId, e.getMessage());
+        }
+    }
+    
+    private static String workerKey(String workerId) {
+        return WORKER_KEY_PREFIX + workerId;
+    }
+    
+    private static LocalDateTime parseTime(Object value) {
+        return value != null ? LocalDateTime.parse((String) value) : null;
+    }
+    
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown";
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.taskqueue.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.taskqueue.config.TaskQueueProperties;
+import com.taskqueue.model.Task;
+import com.taskqueue.model.TaskStatus;
+import com.taskqueue.model.WorkflowStatus;
+import com.taskqueue.queue.QueueBackend;
+import com.taskqueue.repository.TaskBatchRepository;
+import com.taskqueue.repository.WorkflowBatchRepository;
+import com.taskqueue.websocket.TaskStatusBroadcaster;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Moves workflows forward from the worker side. When a workflow task
+ * completes, the worker counts it against each child in Postgres (an atomic
+ * decrement of the child's pending_parents) and enqueues the children that
+ * have no parents left, in the same transaction that records the
+ * completion. The parent's output is handed to its children through a
+ * Redis hash per child, which the child's worker reads when it starts, so
+ * outputs never go through the tasks table. A failed or cancelled task
+ * fails its workflow and cancels everything downstream of it; independent
+ * branches run on.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WorkflowCoordinator {
+    
+    // Payload key under which a task receives its parents' outputs, by parent node id
+    public static final String PARENT_OUTPUTS_KEY = "parentOutputs";
+    
+    private static final String INPUTS_KEY_PREFIX = "workflow:inputs:";
+    
+    private final TaskBatchRepository taskBatchRepository;
+    private final WorkflowBatchRepository workflowBatchRepository;
+    private final QueueBackend queueBackend;
+    private final TaskTransitionScript transitionScript;
+    private final TaskStatusBroadcaster statusBroadcaster;
+    private final MetricsAggregator metricsAggregator;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskQueueProperties properties;
+    
+    /**
+     * The payload to execute {@code task} with: its own, plus the outputs of
+     * its parents under {@value #PARENT_OUTPUTS_KEY} if it has any.
+     */
+    public Map<String, Object> inputPayload(Task task) {
+        if (task.getWorkflowId() == null) {
+            return task.getPayload();
+        }
+        Map<Object, Object> stored = stringRedisTemplate.opsForHash().entries(inputsKey(task.getTaskId()));
+        if (stored.isEmpty()) {
+            return task.getPayload();
+        }
+        
+        Map<String, Object> parentOutputs = new HashMap<>();
+        stored.forEach((nodeId, json) -> parentOutputs.put((String) nodeId, fromJson((String) json)));
+        Map<String, Object> payload = new HashMap<>(task.getPayload());
+        payload.put(PARENT_OUTPUTS_KEY, parentOutputs);
+        return payload;
+    }
+    
+    /**
+     * Persists the completion of a workflow task and, in the same
+     * transaction, releases its children and enqueues those now ready, so a
+     * crash cannot leave the task COMPLETED with its children still waiting.
+     * The completion is written only while {@code workerId} still holds the
+     * task at {@code attempt}.
+     *
+     * @return false if the attempt was taken over and nothing was recorded
+     */
+    public boolean onTaskCompleted(Task task, String workerId, int attempt, Map<String, Object> output) {
+        String workflowId = task.getWorkflowId();
+        LocalDateTime now = LocalDateTime.now();
+        
+        Released released = transactionTemplate.execute(status -> {
+            if (!taskBatchRepository.updateIfProcessing(task, workerId, attempt)) {
+                return null;
+            }
+            List<String> children = workflowBatchRepository.releaseEdges(task.getTaskId());
+            List<Task> ready = List.of();
+            if (!children.isEmpty()) {
+                // Written before commit, so the output is there by the time a child can be claimed
+                storeOutput(task, output, children);
+                ready = taskBatchRepository.releaseWaiting(children);
+                if (!ready.isEmpty()) {
+                    queueBackend.enqueue(ready);
+                }
+            }
+            return new Released(ready, workflowBatchRepository.recordCompleted(workflowId, now));
+        });
+        if (released == null) {
+            return false;
+        }
+        
+        if (!released.ready().isEmpty()) {
+            transitionScript.applyAll(released.ready().stream()
+                .map(child -> TaskTransitionScript.forTask(child, TaskStatus.PENDING)
+                    .previousStatus(TaskStatus.WAITING)
+                    .build())
+                .toList());
+            for (Task child : released.ready()) {
+                statusBroadcaster.broadcastTaskUpdate(child.getTaskId(), TaskStatus.PENDING);
+                metricsAggregator.recordSubmitted(child);
+            }
+            log.info("Task {} of workflow {} released {} tasks",
+                     task.getTaskId(), workflowId, released.ready().size());
+        }
+        if (released.status() == WorkflowStatus.COMPLETED) {
+            log.info("Workflow {} completed", workflowId);
+        }
+        dropInputs(task);
+        return true;
+    }
+    
+    /**
+     * Moves a task to FAILED or CANCELLED through {@code transition} and,
+     * for a workflow task, fails the workflow and cancels every task still
+     * waiting downstream of it in the same transaction. The workflow counts
+     * the task only if {@code transition} reports that it changed the row.
+     *
+     * @return the result of {@code transition}
+     */
+    public boolean onTaskFailed(Task task, BooleanSupplier transition) {
+        if (task.getWorkflowId() == null) {
+            return transition.getAsBoolean();
+        }
+        List<Task> cancelled = transactionTemplate.execute(status ->
+            transition.getAsBoolean() ? recordFailure(task) : null);
+        if (cancelled == null) {
+            return false;
+        }
+        publishFailure(task, cancelled);
+        return true;
+    }
+    
+    /**
+     * Counts a failed or cancelled workflow task and cancels what waits
+     * downstream of it. Must run in the transaction that moved the task out
+     * of its active status, so each task is counted once.
+     *
+     * @return the downstream tasks cancelled, to pass to {@link #publishFailure}
+     */
+    public List<Task> recordFailure(Task task) {
+        LocalDateTime now = LocalDateTime.now();
+        String reason = "Upstream task " + task.getTaskId() + " " + task.getStatus().name().toLowerCase();
+        List<Task> downstream = taskBatchRepository.cancelDownstream(task.getTaskId(), now, reason);
+        boolean failed = task.getStatus() == TaskStatus.FAILED;
+        workflowBatchRepository.recordFailed(task.getWorkflowId(), failed ? 1 : 0,
+            downstream.size() + (failed ? 0 : 1), now);
+        return downstream;
+    }
+    
+    /**
+     * Publishes the cancellations of {@link #recordFailure} once its
+     * transaction has committed.
+     */
+    public void publishFailure(Task task, List<Task> cancelled) {
+        String workflowId = task.getWorkflowId();
+        if (!cancelled.isEmpty()) {
+            transitionScript.applyAll(cancelled.stream()
+                .map(child -> TaskTransitionScript.forTask(child, TaskStatus.CANCELLED)
+                    .previousStatus(TaskStatus.WAITING)
+                    .build())
+                .toList());
+            cancelled.forEach(child -> statusBroadcaster.broadcastTaskUpdate(child.getTaskId(), TaskStatus.CANCELLED));
+        }
+        log.warn("Workflow {} failed at task {}: {} downstream tasks cancelled",
+                 workflowId, task.getTaskId(), cancelled.size());
+        dropInputs(task);
+    }
+    
+    private void storeOutput(Task parent, Map<String, Object> output, List<String> children) {
+        String json = toJson(output != null ? output : Map.of());
+        long ttl = properties.getWorkflow().getOutputTtl();
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            for (String child : children) {
+                redis.hSet(inputsKey(child), parent.getNodeId(), json);
+                redis.pExpire(inputsKey(child), ttl);
+            }
+            return null;
+        });
+    }
+    
+    private void dropInputs(Task task) {
+        try {
+            stringRedisTemplate.delete(inputsKey(task.getTaskId()));
+        } catch (RuntimeException e) {
+            // Expires on its own
+            log.debug("Could not drop inputs of task {}: {}", task.getTaskId(), e.getMessage());
+        }
+    }
+    
+    private static String inputsKey(String taskId) {
+        return INPUTS_KEY_PREFIX + taskId;
+    }
+    
+    private String toJson(Map<String, Object> output) {
+        try {
+            return objectMapper.writeValueAsString(output);
+        } catch (JsonProcessingException e) {
+            // The children still run, just without this parent's output
+            log.warn("Task output is not serializable: {}", e.getMessage());
+            return "{}";
+        }
+    }
+    
+    private Map<String, Object> fromJson(String json) {
+        try {
+            return objectMapper.readValue(json, new TypeReference<>() {});
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored parent output is not valid JSON", e);
+        }
+    }
+    
+    private record Released(List<Task> ready, WorkflowStatus status) {
+    }
+}
@@ -0,0 +1,228 @@
+package com.taskqueue.service;
+
+import com.taskqueue.config.TaskQueueProperties;
+import com.taskqueue.dto.WorkflowRequest;
+import com.taskqueue.dto.WorkflowResponse;
+import com.taskqueue.model.Task;
+import com.taskqueue.model.TaskStatus;
+import com.taskqueue.model.Workflow;
+import com.taskqueue.model.WorkflowEdge;
+import com.taskqueue.model.WorkflowStatus;
+import com.taskqueue.queue.QueueBackend;
+import com.taskqueue.repository.TaskBatchRepository;
+import com.taskqueue.repository.TaskRepository;
+import com.taskqueue.repository.WorkflowBatchRepository;
+import com.taskqueue.repository.WorkflowRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Submits workflows: DAGs of tasks where a task starts once every task it
+ * depends on has completed. All tasks are inserted up front; those without
+ * dependencies are enqueued right away and run in parallel, the rest wait
+ * (status WAITING) until the {@link WorkflowCoordinator} releases them.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WorkflowService {
+    
+    private final WorkflowRepository workflowRepository;
+    private final WorkflowBatchRepository workflowBatchRepository;
+    private final TaskRepository taskRepository;
+    private final TaskBatchRepository taskBatchRepository;
+    private final TaskSubmissionService taskSubmissionService;
+    private final QueueBackend queueBackend;
+    private final TaskTransitionScript transitionScript;
+    private final MetricsAggregator metricsAggregator;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskQueueProperties properties;
+    
+    public WorkflowResponse submitWorkflow(WorkflowRequest request) {
+        Map<String, Set<String>> dependencies = validate(request);
+        
+        String workflowId = "wf_" + UUID.randomUUID().toString().replace("-", "");
+        Map<String, Task> tasks = new LinkedHashMap<>();
+        for (WorkflowRequest.WorkflowNode node : request.getNodes()) {
+            int parents = dependencies.get(node.getId()).size();
+            Task task = taskSubmissionService.buildTask(node.getTask());
+            task.setWorkflowId(workflowId);
+            task.setNodeId(node.getId());
+            task.setPendingParents(parents);
+            task.setStatus(parents == 0 ? TaskStatus.PENDING : TaskStatus.WAITING);
+            tasks.put(node.getId(), task);
+        }
+        
+        List<WorkflowEdge> edges = new ArrayList<>();
+        dependencies.forEach((nodeId, parents) -> parents.forEach(parent -> edges.add(WorkflowEdge.builder()
+            .workflowId(workflowId)
+            .parentTaskId(tasks.get(parent).getTaskId())
+            .childTaskId(tasks.get(nodeId).getTaskId())
+            .build())));
+        List<Task> roots = tasks.values().stream()
+            .filter(task -> task.getStatus() == TaskStatus.PENDING)
+            .toList();
+        
+        Workflow workflow = Workflow.builder()
+            .workflowId(workflowId)
+            .name(request.getName())
+            .status(WorkflowStatus.RUNNING)
+            .totalTasks(tasks.size())
+            .completedTasks(0)
+            .failedTasks(0)
+            .cancelledTasks(0)
+            .build();
+        
+        // The workflow, all of its tasks and edges, and the queue entries of the roots commit together
+        transactionTemplate.executeWithoutResult(status -> {
+            workflowRepository.save(workflow);
+            taskBatchRepository.insertAll(List.copyOf(tasks.values()));
+            if (!edges.isEmpty()) {
+                workflowBatchRepository.insertEdges(edges);
+            }
+            queueBackend.enqueue(roots);
+        });
+        
+        transitionScript.applyAll(tasks.values().stream()
+            .map(task -> TaskTransitionScript.forTask(task, task.getStatus())
+                .previousStatus(null)
+                .build())
+            .toList());
+        // Waiting tasks count as submitted once they are released
+        roots.forEach(metricsAggregator::recordSubmitted);
+        
+        log.info("Workflow {} submitted: {} tasks, {} started", workflowId, tasks.size(), roots.size());
+        
+        return buildResponse(workflow, List.copyOf(tasks.values()), dependencies);
+    }
+    
+    public WorkflowResponse getWorkflow(String workflowId) {
+        Workflow workflow = workflowRepository.findByWorkflowId(workflowId)
+            .orElseThrow(() -> new IllegalArgumentException("Workflow not found: " + workflowId));
+        
+        List<Task> tasks = new ArrayList<>(taskRepository.findByWorkflowId(workflowId));
+        tasks.sort(Comparator.comparing(Task::getId));
+        Map<String, String> nodeIds = new HashMap<>();
+        tasks.forEach(task -> nodeIds.put(task.getTaskId(), task.getNodeId()));
+        
+        Map<String, Set<String>> dependencies = new HashMap<>();
+        tasks.forEach(task -> dependencies.put(task.getNodeId(), new LinkedHashSet<>()));
+        for (WorkflowEdge edge : workflowBatchRepository.findEdges(workflowId)) {
+            dependencies.get(nodeIds.get(edge.getChildTaskId())).add(nodeIds.get(edge.getParentTaskId()));
+        }
+        return buildResponse(workflow, tasks, dependencies);
+    }
+    
+    /**
+     * Checks every node and its dependencies and returns the distinct
+     * dependencies of each node.
+     *
+     * @throws IllegalArgumentException if a node is invalid, a dependency
+     *         is unknown, or the dependencies contain a cycle
+     */
+    private Map<String, Set<String>> validate(WorkflowRequest request) {
+        List<WorkflowRequest.WorkflowNode> nodes = request.getNodes();
+        int maxNodes = properties.getWorkflow().getMaxNodes();
+        if (nodes.size() > maxNodes) {
+            throw new IllegalArgumentException(
+                "Workflow size " + nodes.size() + " exceeds limit of " + maxNodes
+            );
+        }
+        
+        Map<String, Set<String>> dependencies = new LinkedHashMap<>();
+        for (WorkflowRequest.WorkflowNode node : nodes) {
+            if (node == null || node.getId() == null) {
+                throw new IllegalArgumentException("Every node needs an id");
+            }
+            String error = taskSubmissionService.validate(node.getTask());
+            if (error != null) {
+                throw new IllegalArgumentException("Node " + node.getId() + ": " + error);
+            }
+            // Keys would dedupe against tasks outside the workflow
+            if (node.getTask().getIdempotencyKey() != null) {
+                throw new IllegalArgumentException("Node " + node.getId() + ": idempotency keys are not supported");
+            }
+            Set<String> parents = node.getDependsOn() != null
+                ? new LinkedHashSet<>(node.getDependsOn())
+                : new LinkedHashSet<>();
+            if (dependencies.put(node.getId(), parents) != null) {
+                throw new IllegalArgumentException("Duplicate node id: " + node.getId());
+            }
+        }
+        
+        dependencies.forEach((nodeId, parents) -> parents.forEach(parent -> {
+            if (!dependencies.containsKey(parent)) {
+                throw new IllegalArgumentException("Node " + nodeId + " depends on unknown node " + parent);
+            }
+        }));
+        checkAcyclic(dependencies);
+        return dependencies;
+    }
+    
+    // Kahn's algorithm: nodes left unvisited once no node is free of dependencies lie on a cycle
+    static void checkAcyclic(Map<String, Set<String>> dependencies) {
+        Map<String, Integer> remaining = new HashMap<>();
+        Map<String, List<String>> children = new HashMap<>();
+        Deque<String> ready = new ArrayDeque<>();
+        dependencies.forEach((nodeId, parents) -> {
+            remaining.put(nodeId, parents.size());
+            parents.forEach(parent -> children.computeIfAbsent(parent, key -> new ArrayList<>()).add(nodeId));
+            if (parents.isEmpty()) {
+                ready.add(nodeId);
+            }
+        });
+        
+        int visited = 0;
+        while (!ready.isEmpty()) {
+            String nodeId = ready.poll();
+            visited++;
+            for (String child : children.getOrDefault(nodeId, List.of())) {
+                if (remaining.merge(child, -1, Integer::sum) == 0) {
+                    ready.add(child);
+                }
+            }
+        }
+        if (visited < dependencies.size()) {
+            throw new IllegalArgumentException("Workflow dependencies contain a cycle");
+        }
+    }
+    
+    private WorkflowResponse buildResponse(Workflow workflow, List<Task> tasks, Map<String, Set<String>> dependencies) {
+        return WorkflowResponse.builder()
+            .workflowId(workflow.getWorkflowId())
+            .name(workflow.getName())
+            .status(workflow.getStatus())
+            .totalTasks(workflow.getTotalTasks())
+            .completedTasks(workflow.getCompletedTasks())
+            .failedTasks(workflow.getFailedTasks())
+            .cancelledTasks(workflow.getCancelledTasks())
+            .createdAt(workflow.getCreatedAt())
+            .completedAt(workflow.getCompletedAt())
+            .nodes(tasks.stream()
+                .map(task -> WorkflowResponse.NodeState.builder()
+                    .id(task.getNodeId())
+                    .taskId(task.getTaskId())
+                    .taskType(task.getTaskType())
+                    .status(task.getStatus())
+                    .dependsOn(List.copyOf(dependencies.getOrDefault(task.getNodeId(), Set.of())))
+                    .completedAt(task.getCompletedAt())
+                    .errorMessage(task.getErrorMessage())
+                    .build())
+                .toList())
+            .build();
+    }
+}
@@ -1,6 +1,10 @@
 package com.taskqueue.websocket;
 
+import com.taskqueue.config.TaskQueueProperties;
+import com.taskqueue.config.WebSocketConfig;
 import com.taskqueue.model.TaskStatus;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
@@ -9,28 +13,117 @@ import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Coalesces task status updates and pushes them to STOMP clients from a
+ * dedicated thread. Callers only record the latest state per task; every
+ * flush interval the pending updates go out as batched frames on
+ * {@code /topic/tasks}, and on {@code /topic/task/{id}} for tasks that
+ * currently have a subscriber.
+ *
+ * <p>With the broker relay, subscribers may sit on other instances, so
+ * every update is published and the broker does the filtering; per-task
+ * topics use {@code /topic/task.{id}} there, as RabbitMQ routing keys
+ * cannot contain "/". Clients must subscribe to the form matching the
+ * broker mode.
+ */
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class TaskStatusBroadcaster {
     
+    private static final String TASKS_TOPIC = "/topic/tasks";
+    
     private final SimpMessagingTemplate messagingTemplate;
+    private final TaskSubscriptionRegistry subscriptionRegistry;
+    private final TaskQueueProperties properties;
+    
+    // Latest pending update per task; a newer update replaces an unsent one
+    private final Map<String, TaskStatusUpdate> pending = new ConcurrentHashMap<>();
+    private ScheduledExecutorService flusher;
+    
+    @PostConstruct
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "task-status-broadcaster");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getWebsocket().getFlushInterval();
+        flusher.scheduleWithFixedDelay(this::flushSafely, interval, interval, TimeUnit.MILLISECONDS);
+    }
     
     public void broadcastTaskUpdate(String taskId, TaskStatus status) {
-        TaskStatusUpdate update = new TaskStatusUpdate(
-            taskId, 
-            status, 
-            LocalDateTime.now()
-        );
-        
-        // Broadcast to specific task subscribers
-        messagingTemplate.convertAndSend("/topic/task/" + taskId, update);
-        
+        pending.put(taskId, new TaskStatusUpdate(taskId, status, LocalDateTime.now()));
+    }
+    
+    private void flush() {
+        int maxBatchSize = properties.getWebsocket().getMaxBatchSize();
+        List<TaskStatusUpdate> batch = new ArrayList<>(Math.min(pending.size(), maxBatchSize));
+        Iterator<String> taskIds = pending.keySet().iterator();
+        while (taskIds.hasNext()) {
+            TaskStatusUpdate update = pending.remove(taskIds.next());
+            if (update == null) {
+                continue;
+            }
+            batch.add(update);
+            
+            // Broadcast to specific task subscribers, if there are any
+            String taskTopic = taskTopic(update.getTaskId());
+            if (shouldSend(taskTopic)) {
+                messagingTemplate.convertAndSend(taskTopic, update);
+            }
+            
+            if (batch.size() >= maxBatchSize) {
+                sendBatch(batch);
+                batch = new ArrayList<>(maxBatchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            sendBatch(batch);
+        }
+    }
+    
+    private void sendBatch(List<TaskStatusUpdate> updates) {
         // Broadcast to all tasks subscribers (for dashboard)
-        messagingTemplate.convertAndSend("/topic/tasks", update);
-        
-        log.debug("Broadcasted status update for task {}: {}", taskId, status);
+        if (shouldSend(TASKS_TOPIC)) {
+            messagingTemplate.convertAndSend(TASKS_TOPIC, updates);
+        }
+        log.debug("Broadcasted {} coalesced status updates", updates.size());
+    }
+    
+    private String taskTopic(String taskId) {
+        return (isRelay() ? "/topic/task." : "/topic/task/") + taskId;
+    }
+    
+    private boolean shouldSend(String destination) {
+        return isRelay() || subscriptionRegistry.hasSubscribers(destination);
+    }
+    
+    private boolean isRelay() {
+        return WebSocketConfig.RELAY_BROKER.equals(properties.getWebsocket().getBroker());
+    }
+    
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Failed to broadcast task status updates: {}", e.getMessage(), e);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        flushSafely();
     }
     
     @Data
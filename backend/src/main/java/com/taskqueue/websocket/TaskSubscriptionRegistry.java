@@ -0,0 +1,80 @@
+package com.taskqueue.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks which STOMP destinations currently have subscribers, so the
+ * broadcaster can skip per-task topics nobody is listening to. Works for
+ * anonymous sessions, which the user registry does not track.
+ */
+@Slf4j
+@Component
+public class TaskSubscriptionRegistry {
+    
+    // destination -> "sessionId:subscriptionId"
+    private final Map<String, Set<String>> subscribers = new ConcurrentHashMap<>();
+    // "sessionId:subscriptionId" -> destination, needed to resolve unsubscribes
+    private final Map<String, String> destinations = new ConcurrentHashMap<>();
+    
+    public boolean hasSubscribers(String destination) {
+        Set<String> subscriptions = subscribers.get(destination);
+        return subscriptions != null && !subscriptions.isEmpty();
+    }
+    
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String destination = accessor.getDestination();
+        if (destination == null) {
+            return;
+        }
+        String subscription = subscriptionKey(accessor.getSessionId(), accessor.getSubscriptionId());
+        destinations.put(subscription, destination);
+        // Added under the same per-key lock that remove drops an emptied set under
+        subscribers.compute(destination, (d, subscriptions) -> {
+            Set<String> current = subscriptions != null ? subscriptions : ConcurrentHashMap.newKeySet();
+            current.add(subscription);
+            return current;
+        });
+    }
+    
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        remove(subscriptionKey(accessor.getSessionId(), accessor.getSubscriptionId()));
+    }
+    
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        String prefix = event.getSessionId() + ":";
+        destinations.keySet().stream()
+            .filter(subscription -> subscription.startsWith(prefix))
+            .toList()
+            .forEach(this::remove);
+    }
+    
+    private void remove(String subscription) {
+        String destination = destinations.remove(subscription);
+        if (destination == null) {
+            return;
+        }
+        subscribers.computeIfPresent(destination, (d, subscriptions) -> {
+            subscriptions.remove(subscription);
+            return subscriptions.isEmpty() ? null : subscriptions;
+        });
+    }
+    
+    private String subscriptionKey(String sessionId, String subscriptionId) {
+        return sessionId + ":" + subscriptionId;
+    }
+}
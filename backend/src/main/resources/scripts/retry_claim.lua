@@ -0,0 +1,16 @@
+-- Claims due retries by pushing their score out by a claim timeout, so
+-- other instances skip them while this one publishes. A claim that is
+-- never released (the instance died) makes the retry due again.
+--
+-- KEYS[1]     retry schedule (member: task id, score: due time in ms)
+-- ARGV[1]     now in ms
+-- ARGV[2]     score claimed members get (now + claim timeout)
+-- ARGV[3]     maximum number of members to claim
+--
+-- Returns the claimed members.
+
+local due = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, tonumber(ARGV[3]))
+for _, member in ipairs(due) do
+    redis.call('ZADD', KEYS[1], ARGV[2], member)
+end
+return due
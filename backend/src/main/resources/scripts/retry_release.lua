@@ -0,0 +1,16 @@
+-- Removes published retries from the schedule, skipping members whose
+-- score changed since the claim: those were scheduled again meanwhile.
+--
+-- KEYS[1]     retry schedule
+-- ARGV[1]     score the members were claimed with
+-- ARGV[2..]   members to remove
+--
+-- Returns the number of members removed.
+
+local removed = 0
+for i = 2, #ARGV do
+    if tonumber(redis.call('ZSCORE', KEYS[1], ARGV[i])) == tonumber(ARGV[1]) then
+        removed = removed + redis.call('ZREM', KEYS[1], ARGV[i])
+    end
+end
+return removed
@@ -0,0 +1,47 @@
+-- Replaces the status counts with database counts plus the deltas kept
+-- since the seed started, and marks them seeded, in one step.
+--
+-- KEYS[1]     seeded marker
+-- KEYS[2]     count deltas kept while not seeded
+-- KEYS[3]     per-status counts
+-- KEYS[4..]   per-status counts of each task type in ARGV[2..n+1]
+-- ARGV[1]     number of task types n
+-- ARGV[2..]   task types, then '<type>|<status>' field/count pairs from the database
+--
+-- Returns 0 if the counts were already seeded, otherwise 1.
+
+if redis.call('EXISTS', KEYS[1]) == 1 then
+    return 0
+end
+
+local n = tonumber(ARGV[1])
+local typeKeys = {}
+for i = 1, n do
+    typeKeys[ARGV[i + 1]] = KEYS[i + 3]
+end
+
+local counts = {}
+for i = n + 2, #ARGV, 2 do
+    counts[ARGV[i]] = tonumber(ARGV[i + 1])
+end
+local deltas = redis.call('HGETALL', KEYS[2])
+for i = 1, #deltas, 2 do
+    counts[deltas[i]] = (counts[deltas[i]] or 0) + tonumber(deltas[i + 1])
+end
+
+for i = 3, #KEYS do
+    redis.call('DEL', KEYS[i])
+end
+for field, count in pairs(counts) do
+    local sep = string.find(field, '|[^|]*$')
+    local taskType = string.sub(field, 1, sep - 1)
+    local status = string.sub(field, sep + 1)
+    redis.call('HINCRBY', KEYS[3], status, count)
+    if typeKeys[taskType] then
+        redis.call('HINCRBY', typeKeys[taskType], status, count)
+    end
+end
+
+redis.call('DEL', KEYS[2])
+redis.call('SET', KEYS[1], '1')
+return 1
@@ -0,0 +1,17 @@
+-- Rebuilds a task status hash from the database row, unless a transition
+-- recreated it after that row was read: the transition is newer.
+--
+-- KEYS[1]     task status hash
+-- ARGV[1]     status hash TTL in seconds
+-- ARGV[2..]   status hash field/value pairs
+--
+-- Returns 1 if the hash was written, 0 if it already existed.
+
+if redis.call('EXISTS', KEYS[1]) == 1 then
+    return 0
+end
+for i = 2, #ARGV, 2 do
+    redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1])
+end
+redis.call('EXPIRE', KEYS[1], ARGV[1])
+return 1
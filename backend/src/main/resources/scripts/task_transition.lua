@@ -0,0 +1,42 @@
+-- Applies one task state transition atomically in a single round-trip.
+--
+-- KEYS[1]     task status hash
+-- KEYS[2]     per-status counts
+-- KEYS[3]     per-status counts of the task's type
+-- KEYS[4]     marker set once the counts are seeded from the database
+-- KEYS[5]     count deltas kept while the counts are not seeded
+-- ARGV[1]     new status
+-- ARGV[2]     previous status ('' for a new task)
+-- ARGV[3]     task type
+-- ARGV[4]     status hash TTL in seconds (0 keeps the current TTL)
+-- ARGV[5..]   extra status hash field/value pairs
+
+redis.call('HSET', KEYS[1], 'status', ARGV[1])
+for i = 5, #ARGV, 2 do
+    redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1])
+end
+if tonumber(ARGV[4]) > 0 then
+    redis.call('EXPIRE', KEYS[1], ARGV[4])
+end
+
+-- Per-status counts, overall and per task type, so reads never need COUNT(*)
+if ARGV[2] ~= ARGV[1] then
+    if redis.call('EXISTS', KEYS[4]) == 1 then
+        if ARGV[2] ~= '' then
+            redis.call('HINCRBY', KEYS[2], ARGV[2], -1)
+            redis.call('HINCRBY', KEYS[3], ARGV[2], -1)
+        end
+        redis.call('HINCRBY', KEYS[2], ARGV[1], 1)
+        redis.call('HINCRBY', KEYS[3], ARGV[1], 1)
+    else
+        -- Not seeded yet: the seeder adds these on top of the database counts
+        if ARGV[2] ~= '' then
+            redis.call('HINCRBY', KEYS[5], ARGV[3] .. '|' .. ARGV[2], -1)
+        end
+        redis.call('HINCRBY', KEYS[5], ARGV[3] .. '|' .. ARGV[1], 1)
+    end
+end
+
+redis.call('PUBLISH', 'task:status:changed', KEYS[1])
+
+return 1
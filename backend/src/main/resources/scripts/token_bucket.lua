@@ -0,0 +1,48 @@
+-- Takes one token from a bucket shared by every instance. A task that
+-- finds the bucket empty reserves the next free token instead: the bucket
+-- goes into deficit by one and the task is deferred until the deficit has
+-- refilled, when its reservation admits it without taking another token.
+--
+-- KEYS[1]     bucket hash (tokens, ts)
+-- KEYS[2]     reservations (member: task id, score: ms from which it admits)
+-- ARGV[1]     refill rate in tokens per second
+-- ARGV[2]     bucket capacity
+-- ARGV[3]     task id
+-- ARGV[4]     ms a reservation is kept past its time for a late task
+--
+-- Returns 0 if the task was admitted, otherwise the ms to defer it by.
+
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local rate = tonumber(ARGV[1])
+local capacity = tonumber(ARGV[2])
+local grace = tonumber(ARGV[4])
+
+local reservedAt = tonumber(redis.call('ZSCORE', KEYS[2], ARGV[3]))
+if reservedAt then
+    if reservedAt > now then
+        return math.ceil(reservedAt - now)
+    end
+    redis.call('ZREM', KEYS[2], ARGV[3])
+    return 0
+end
+-- Tasks that never came back (cancelled, failed elsewhere) give up their reservation
+redis.call('ZREMRANGEBYSCORE', KEYS[2], '-inf', now - grace)
+
+local state = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+local tokens = tonumber(state[1]) or capacity
+local ts = tonumber(state[2]) or now
+tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate / 1000) - 1
+
+local wait = 0
+if tokens < 0 then
+    wait = math.ceil(-tokens * 1000 / rate)
+    redis.call('ZADD', KEYS[2], now + wait, ARGV[3])
+    redis.call('PEXPIRE', KEYS[2], wait + grace)
+end
+
+redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', now)
+-- A full bucket carries no state, so idle buckets can expire
+redis.call('PEXPIRE', KEYS[1], math.ceil((capacity - tokens) * 1000 / rate) + 1000)
+
+return wait
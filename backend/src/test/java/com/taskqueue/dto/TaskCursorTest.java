@@ -0,0 +1,49 @@
+package com.taskqueue.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TaskCursorTest {
+    
+    @Test
+    void roundTripsThroughItsToken() {
+        TaskCursor cursor = new TaskCursor(LocalDateTime.of(2024, 3, 1, 12, 30, 15, 123_456_000), 42L);
+        
+        assertThat(TaskCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+    
+    @Test
+    void keepsWholeSecondsAndLargeIds() {
+        TaskCursor cursor = new TaskCursor(LocalDateTime.of(2024, 3, 1, 0, 0), Long.MAX_VALUE);
+        
+        assertThat(TaskCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+    
+    @Test
+    void encodesToAUrlSafeToken() {
+        String token = new TaskCursor(LocalDateTime.of(2024, 12, 31, 23, 59, 59, 999_999_000), 7L).encode();
+        
+        assertThat(token).matches("[A-Za-z0-9_-]+");
+    }
+    
+    @Test
+    void rejectsMalformedTokens() {
+        assertThatThrownBy(() -> TaskCursor.decode("not a cursor!"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("Invalid cursor");
+        assertThatThrownBy(() -> TaskCursor.decode(encodeRaw("2024-03-01T12:00")))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> TaskCursor.decode(encodeRaw("yesterday|42")))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> TaskCursor.decode(encodeRaw("2024-03-01T12:00|forty-two")))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+    
+    private static String encodeRaw(String raw) {
+        return java.util.Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes());
+    }
+}
@@ -0,0 +1,124 @@
+package com.taskqueue.queue;
+
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.taskqueue.config.TaskQueueProperties;
+import com.taskqueue.model.Priority;
+import com.taskqueue.model.Task;
+import com.taskqueue.model.TaskStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TaskMessageConverterTest {
+    
+    @Test
+    void roundTripsTasksAsJson() {
+        TaskMessageConverter converter = converter("json", "none", 1024);
+        Task task = task("small");
+        
+        Message message = converter.toMessage(task, new MessageProperties());
+        
+        assertThat(message.getMessageProperties().getContentType()).isEqualTo(MessageProperties.CONTENT_TYPE_JSON);
+        assertThat(converter.fromMessage(message)).isEqualTo(task);
+    }
+    
+    @Test
+    void roundTripsTasksAsBinaryEnvelopes() {
+        TaskMessageConverter converter = converter("binary", "none", 1024);
+        Task task = task("small");
+        
+        Message message = converter.toMessage(task, new MessageProperties());
+        
+        assertThat(message.getMessageProperties().getContentType()).isEqualTo(TaskMessageConverter.CONTENT_TYPE);
+        assertThat(message.getMessageProperties().<Integer>getHeader(TaskMessageConverter.SCHEMA_VERSION_HEADER))
+            .isEqualTo(TaskMessageConverter.SCHEMA_VERSION);
+        assertThat(message.getMessageProperties().getContentEncoding()).isNull();
+        assertThat(converter.fromMessage(message)).isEqualTo(task);
+    }
+    
+    @Test
+    void compressesEnvelopesFromTheThreshold() {
+        TaskMessageConverter converter = converter("binary", "lz4", 64);
+        Task task = task("x".repeat(2000));
+        
+        Message message = converter.toMessage(task, new MessageProperties());
+        
+        assertThat(message.getMessageProperties().getContentEncoding()).isEqualTo("lz4");
+        assertThat(message.getBody().length).isLessThan(2000);
+        assertThat(converter.fromMessage(message)).isEqualTo(task);
+    }
+    
+    @Test
+    void skipsEnvelopeFieldsAddedByNewerProducers() throws Exception {
+        TaskMessageConverter converter = converter("binary", "none", 1024);
+        Map<String, Object> envelope = new HashMap<>();
+        envelope.put("t", "task_1");
+        envelope.put("ty", "EMAIL_SEND");
+        envelope.put("zz", "added later");
+        
+        Task decoded = (Task) converter.fromMessage(binaryMessage(new CBORMapper().writeValueAsBytes(envelope), 1));
+        
+        assertThat(decoded.getTaskId()).isEqualTo("task_1");
+        assertThat(decoded.getTaskType()).isEqualTo("EMAIL_SEND");
+    }
+    
+    @Test
+    void rejectsEnvelopesOfANewerSchemaVersion() {
+        TaskMessageConverter converter = converter("binary", "none", 1024);
+        byte[] body = converter.toMessage(task("small"), new MessageProperties()).getBody();
+        
+        assertThatThrownBy(() -> converter.fromMessage(binaryMessage(body, TaskMessageConverter.SCHEMA_VERSION + 1)))
+            .isInstanceOf(MessageConversionException.class)
+            .hasMessageContaining("schema version");
+    }
+    
+    @Test
+    void readsJsonMessagesWhilePublishingBinary() {
+        Task task = task("small");
+        Message json = converter("json", "none", 1024).toMessage(task, new MessageProperties());
+        
+        assertThat(converter("binary", "lz4", 64).fromMessage(json)).isEqualTo(task);
+    }
+    
+    private static TaskMessageConverter converter(String codec, String compression, int threshold) {
+        TaskQueueProperties.Messaging messaging = new TaskQueueProperties.Messaging();
+        messaging.setCodec(codec);
+        messaging.setCompression(compression);
+        messaging.setCompressionThreshold(threshold);
+        return new TaskMessageConverter(new Jackson2JsonMessageConverter(), messaging);
+    }
+    
+    private static Message binaryMessage(byte[] body, int schemaVersion) {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(TaskMessageConverter.CONTENT_TYPE);
+        properties.setHeader(TaskMessageConverter.SCHEMA_VERSION_HEADER, schemaVersion);
+        return new Message(body, properties);
+    }
+    
+    private static Task task(String body) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("body", body);
+        payload.put("attempt", 2);
+        return Task.builder()
+            .id(7L)
+            .taskId("task_1")
+            .taskType("EMAIL_SEND")
+            .priority(Priority.HIGH)
+            .status(TaskStatus.PENDING)
+            .payload(payload)
+            .retryCount(1)
+            .maxRetries(3)
+            .createdAt(LocalDateTime.of(2024, 3, 1, 12, 0, 0, 123_456_000))
+            .dispatchedAt(LocalDateTime.of(2024, 3, 1, 12, 0, 1, 654_321_000))
+            .build();
+    }
+}
@@ -0,0 +1,103 @@
+package com.taskqueue.service;
+
+import com.taskqueue.config.TaskQueueProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExecutionLimiterTest {
+    
+    private static final String TYPE = "EMAIL_SEND";
+    
+    private final TaskQueueProperties properties = new TaskQueueProperties();
+    // Local buckets only, so no Redis
+    private final ExecutionLimiter limiter = new ExecutionLimiter(properties, null, new SimpleMeterRegistry());
+    
+    @Test
+    void admitsUnlistedTypes() {
+        assertThat(limiter.tryAdmit("UNLISTED", "t1").isAdmitted()).isTrue();
+    }
+    
+    @Test
+    void admitsTheBurstThenReservesTokensAtTheRefillRate() {
+        rateLimit(10, 2);
+        
+        assertThat(limiter.tryAdmit(TYPE, "t1").isAdmitted()).isTrue();
+        assertThat(limiter.tryAdmit(TYPE, "t2").isAdmitted()).isTrue();
+        
+        ExecutionLimiter.Admission third = limiter.tryAdmit(TYPE, "t3");
+        ExecutionLimiter.Admission fourth = limiter.tryAdmit(TYPE, "t4");
+        assertThat(third.isAdmitted()).isFalse();
+        assertThat(third.getRetryAfterMs()).isBetween(80L, 100L);
+        // Each deferred task holds the next token, so they come back spread out
+        assertThat(fourth.isAdmitted()).isFalse();
+        assertThat(fourth.getRetryAfterMs()).isBetween(180L, 200L);
+    }
+    
+    @Test
+    void aTaskBackEarlyKeepsItsReservationWithoutTakingAnother() {
+        rateLimit(10, 1);
+        limiter.tryAdmit(TYPE, "t1");
+        long reserved = limiter.tryAdmit(TYPE, "t2").getRetryAfterMs();
+        
+        ExecutionLimiter.Admission early = limiter.tryAdmit(TYPE, "t2");
+        
+        assertThat(early.isAdmitted()).isFalse();
+        assertThat(early.getRetryAfterMs()).isBetween(1L, reserved);
+        // t2's second attempt did not push the next task further out
+        assertThat(limiter.tryAdmit(TYPE, "t3").getRetryAfterMs()).isBetween(180L, 200L);
+    }
+    
+    @Test
+    void aTaskBackOnTimeIsAdmittedOnItsReservedToken() throws InterruptedException {
+        rateLimit(10, 1);
+        limiter.tryAdmit(TYPE, "t1");
+        long wait = limiter.tryAdmit(TYPE, "t2").getRetryAfterMs();
+        
+        Thread.sleep(wait + 20);
+        
+        assertThat(limiter.tryAdmit(TYPE, "t2").isAdmitted()).isTrue();
+    }
+    
+    @Test
+    void defersTasksWhileTheBulkheadIsFull() {
+        TaskQueueProperties.ExecutorLimit limit = new TaskQueueProperties.ExecutorLimit();
+        limit.setMaxConcurrent(1);
+        limit.setBulkheadRetryDelay(250);
+        properties.getExecutorLimits().put(TYPE, limit);
+        
+        ExecutionLimiter.Admission first = limiter.tryAdmit(TYPE, "t1");
+        ExecutionLimiter.Admission second = limiter.tryAdmit(TYPE, "t2");
+        
+        assertThat(first.isAdmitted()).isTrue();
+        assertThat(second.isAdmitted()).isFalse();
+        assertThat(second.getRetryAfterMs()).isEqualTo(250);
+        
+        first.release();
+        assertThat(limiter.tryAdmit(TYPE, "t2").isAdmitted()).isTrue();
+    }
+    
+    @Test
+    void aRateDeferralGivesTheBulkheadPermitBack() {
+        TaskQueueProperties.ExecutorLimit limit = rateLimit(10, 1);
+        limit.setMaxConcurrent(1);
+        
+        ExecutionLimiter.Admission first = limiter.tryAdmit(TYPE, "t1");
+        first.release();
+        assertThat(limiter.tryAdmit(TYPE, "t2").isAdmitted()).isFalse();
+        
+        // The permit t2 briefly held is free again; only the rate limit defers t3
+        ExecutionLimiter.Admission third = limiter.tryAdmit(TYPE, "t3");
+        assertThat(third.isAdmitted()).isFalse();
+        assertThat(third.getRetryAfterMs()).isBetween(180L, 200L);
+    }
+    
+    private TaskQueueProperties.ExecutorLimit rateLimit(double ratePerSecond, int burst) {
+        TaskQueueProperties.ExecutorLimit limit = new TaskQueueProperties.ExecutorLimit();
+        limit.setRatePerSecond(ratePerSecond);
+        limit.setBurst(burst);
+        properties.getExecutorLimits().put(TYPE, limit);
+        return limit;
+    }
+}
@@ -0,0 +1,126 @@
+package com.taskqueue.service;
+
+import com.taskqueue.config.TaskQueueProperties;
+import com.taskqueue.model.Priority;
+import com.taskqueue.model.Task;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FairTaskSchedulerTest {
+    
+    private static final int TASKS_PER_LANE = 20;
+    
+    private final TaskQueueProperties properties = new TaskQueueProperties();
+    private FairTaskScheduler scheduler;
+    
+    @AfterEach
+    void shutdown() {
+        scheduler.shutdown();
+    }
+    
+    @Test
+    void servesBusyLanesInProportionToTheirWeights() throws Exception {
+        List<Priority> order = dispatchOrder(Long.MAX_VALUE, 0);
+        
+        // The gate task spent one HIGH credit: 5 HIGH, then full rounds of 6/3/1
+        assertThat(order.subList(0, 9)).containsExactly(
+            Priority.HIGH, Priority.HIGH, Priority.HIGH, Priority.HIGH, Priority.HIGH,
+            Priority.MEDIUM, Priority.MEDIUM, Priority.MEDIUM, Priority.LOW);
+        assertThat(count(order.subList(9, 19), Priority.HIGH)).isEqualTo(6);
+        assertThat(count(order.subList(9, 19), Priority.MEDIUM)).isEqualTo(3);
+        assertThat(count(order.subList(9, 19), Priority.LOW)).isEqualTo(1);
+    }
+    
+    @Test
+    void topsAgedLanesUpLikeTheHeaviestOne() throws Exception {
+        List<Priority> order = dispatchOrder(50, 100);
+        
+        // Every lane head has aged, so each visit grants the HIGH weight
+        List<Priority> round = order.subList(5, 23);
+        assertThat(count(round, Priority.HIGH)).isEqualTo(6);
+        assertThat(count(round, Priority.MEDIUM)).isEqualTo(6);
+        assertThat(count(round, Priority.LOW)).isEqualTo(6);
+    }
+    
+    @Test
+    void aLoneLaneIsServedWithoutWaitingForTheOthers() throws Exception {
+        scheduler = scheduler(Long.MAX_VALUE);
+        List<Priority> order = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(10);
+        
+        for (int i = 0; i < 10; i++) {
+            scheduler.submit(task(Priority.LOW), () -> {
+                order.add(Priority.LOW);
+                return CompletableFuture.completedFuture(null);
+            }, done::countDown);
+        }
+        
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(order).hasSize(10);
+    }
+    
+    /**
+     * Holds the single execution slot with a HIGH task, fills every lane,
+     * optionally lets the lane heads age, then releases the slot and
+     * records the order the lanes are served in.
+     */
+    private List<Priority> dispatchOrder(long agingThreshold, long ageMs) throws Exception {
+        scheduler = scheduler(agingThreshold);
+        List<Priority> order = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(3 * TASKS_PER_LANE);
+        CountDownLatch gateStarted = new CountDownLatch(1);
+        CompletableFuture<Void> gate = new CompletableFuture<>();
+        
+        scheduler.submit(task(Priority.HIGH), () -> {
+            gateStarted.countDown();
+            return gate;
+        }, () -> { });
+        assertThat(gateStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        
+        for (Priority priority : Priority.values()) {
+            for (int i = 0; i < TASKS_PER_LANE; i++) {
+                scheduler.submit(task(priority), () -> {
+                    order.add(priority);
+                    return CompletableFuture.completedFuture(null);
+                }, done::countDown);
+            }
+        }
+        Thread.sleep(ageMs);
+        gate.complete(null);
+        
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        return order;
+    }
+    
+    private FairTaskScheduler scheduler(long agingThreshold) {
+        TaskQueueProperties.Fair fair = properties.getWorker().getFair();
+        fair.setConcurrency(1);
+        fair.setPrefetch(3 * TASKS_PER_LANE);
+        fair.setWeights(Map.of(Priority.HIGH, 6.0, Priority.MEDIUM, 3.0, Priority.LOW, 1.0));
+        fair.setAgingThreshold(agingThreshold);
+        return new FairTaskScheduler(properties, new SimpleMeterRegistry());
+    }
+    
+    private static Task task(Priority priority) {
+        return Task.builder()
+            .taskId("task_" + priority)
+            .priority(priority)
+            .createdAt(LocalDateTime.now())
+            .build();
+    }
+    
+    private static long count(List<Priority> order, Priority priority) {
+        return order.stream().filter(priority::equals).count();
+    }
+}
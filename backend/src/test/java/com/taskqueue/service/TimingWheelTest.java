@@ -0,0 +1,78 @@
+package com.taskqueue.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimingWheelTest {
+    
+    private static final long TICK_MS = 10;
+    private static final int WHEEL_SIZE = 8;
+    private static final long START = 1_000_000;
+    
+    private final TimingWheel<String> wheel = new TimingWheel<>(TICK_MS, WHEEL_SIZE, START);
+    
+    @Test
+    void releasesItemsOnlyOnceTheirTickIsReached() {
+        wheel.add("a", START + 25);
+        wheel.add("b", START + 45);
+        
+        assertThat(wheel.advance(START + 19)).isEmpty();
+        assertThat(wheel.advance(START + 29)).containsExactly("a");
+        assertThat(wheel.advance(START + 39)).isEmpty();
+        assertThat(wheel.advance(START + 49)).containsExactly("b");
+        assertThat(wheel.size()).isZero();
+    }
+    
+    @Test
+    void releasesOverdueItemsOnTheNextTick() {
+        wheel.advance(START + 100);
+        
+        wheel.add("late", START + 5);
+        
+        assertThat(wheel.advance(START + 100 + TICK_MS)).containsExactly("late");
+    }
+    
+    @Test
+    void keepsItemsBeyondOneRotationUntilTheirOwnTick() {
+        long rotation = TICK_MS * WHEEL_SIZE;
+        wheel.add("near", START + 20);
+        wheel.add("far", START + 20 + rotation);
+        
+        assertThat(wheel.advance(START + 20)).containsExactly("near");
+        assertThat(wheel.advance(START + 20 + rotation - TICK_MS)).isEmpty();
+        assertThat(wheel.advance(START + 20 + rotation)).containsExactly("far");
+    }
+    
+    @Test
+    void releasesEverythingDueAfterAPauseLongerThanARotation() {
+        wheel.add("a", START + 10);
+        wheel.add("b", START + 70);
+        wheel.add("c", START + 500);
+        
+        assertThat(wheel.advance(START + 1000)).containsExactlyInAnyOrder("a", "b", "c");
+    }
+    
+    @Test
+    void ignoresItemsAlreadyInTheWheel() {
+        assertThat(wheel.add("a", START + 20)).isTrue();
+        assertThat(wheel.add("a", START + 40)).isFalse();
+        
+        assertThat(wheel.advance(START + 20)).containsExactly("a");
+        assertThat(wheel.advance(START + 40)).isEmpty();
+        // Released items can be added again
+        assertThat(wheel.add("a", START + 60)).isTrue();
+    }
+    
+    @Test
+    void clearDropsEverything() {
+        wheel.add("a", START + 20);
+        wheel.add("b", START + 30);
+        
+        wheel.clear();
+        
+        assertThat(wheel.size()).isZero();
+        assertThat(wheel.advance(START + 100)).isEmpty();
+        assertThat(wheel.add("a", START + 120)).isTrue();
+    }
+}
@@ -0,0 +1,45 @@
+package com.taskqueue.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WorkflowServiceTest {
+    
+    @Test
+    void acceptsADag() {
+        Map<String, Set<String>> dependencies = Map.of(
+            "fetch", Set.of(),
+            "resize", Set.of("fetch"),
+            "thumbnail", Set.of("fetch"),
+            "publish", Set.of("resize", "thumbnail"));
+        
+        assertThatCode(() -> WorkflowService.checkAcyclic(dependencies)).doesNotThrowAnyException();
+    }
+    
+    @Test
+    void rejectsASelfDependency() {
+        Map<String, Set<String>> dependencies = Map.of("a", Set.of(), "b", Set.of("a", "b"));
+        
+        assertThatThrownBy(() -> WorkflowService.checkAcyclic(dependencies))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("cycle");
+    }
+    
+    @Test
+    void rejectsACycleBehindAValidRoot() {
+        Map<String, Set<String>> dependencies = Map.of(
+            "root", Set.of(),
+            "a", Set.of("root", "c"),
+            "b", Set.of("a"),
+            "c", Set.of("b"));
+        
+        assertThatThrownBy(() -> WorkflowService.checkAcyclic(dependencies))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("cycle");
+    }
+}
@@ -59,6 +59,7 @@ function TaskList() {
             label="Filter by Status"
           >
             <MenuItem value="ALL">All</MenuItem>
+            <MenuItem value="WAITING">Waiting</MenuItem>
             <MenuItem value="PENDING">Pending</MenuItem>
             <MenuItem value="PROCESSING">Processing</MenuItem>
             <MenuItem value="COMPLETED">Completed</MenuItem>